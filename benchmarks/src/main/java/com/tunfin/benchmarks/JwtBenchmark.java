@@ -0,0 +1,84 @@
+package com.tunfin.benchmarks;
+
+import com.tunfin.common.security.JwtPrincipal;
+import com.tunfin.common.security.JwtVerifier;
+import com.tunfin.identity.security.JwtUtil;
+import com.tunfin.identity.security.SigningKeys;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Identity-service JwtUtil: issuing a token at login and the parse/validate work done by
+ * the authentication filter on every request, and the shared common-lib JwtVerifier with
+ * and without its verified-token cache, for the legacy HS256 and the current ES256 tokens.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-benchmark-secret-key-0123456789";
+
+    @Param({ "HS256", "ES256" })
+    private String algorithm;
+
+    private JwtUtil jwtUtil;
+    private JwtVerifier cachingVerifier;
+    private JwtVerifier uncachedVerifier;
+    private UserDetails user;
+    private String userId;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        // The shared secret is only needed to sign HS256; ES256 runs without one
+        String secret = "HS256".equals(algorithm) ? SECRET : "";
+        SigningKeys signingKeys = new SigningKeys(algorithm, secret, "", "", "", "", "");
+        jwtUtil = new JwtUtil(signingKeys, 86_400_000L);
+        cachingVerifier = new JwtVerifier(signingKeys.keyResolver(), 10_000);
+        uncachedVerifier = new JwtVerifier(signingKeys.keyResolver(), 0);
+
+        user = new User("+21612345678", "unused", List.of());
+        userId = UUID.randomUUID().toString();
+        token = jwtUtil.generateToken(userId, user);
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtUtil.generateToken(userId, user);
+    }
+
+    @Benchmark
+    public String extractUserId() {
+        return jwtUtil.extractUserId(token);
+    }
+
+    @Benchmark
+    public Claims parse() {
+        return jwtUtil.parse(token);
+    }
+
+    @Benchmark
+    public boolean isTokenValid() {
+        return jwtUtil.isTokenValid(token, user);
+    }
+
+    @Benchmark
+    public JwtPrincipal verify() {
+        return uncachedVerifier.verify(token);
+    }
+
+    @Benchmark
+    public JwtPrincipal verifyCached() {
+        return cachingVerifier.verify(token);
+    }
+}
@@ -0,0 +1,88 @@
+package com.tunfin.benchmarks;
+
+import com.tunfin.wallet.dto.WalletDto;
+import com.tunfin.wallet.idempotency.IdempotencyCache;
+import com.tunfin.wallet.repository.AccountRepository;
+import com.tunfin.wallet.repository.LedgerJdbcRepository;
+import com.tunfin.wallet.repository.TransactionRepository;
+import com.tunfin.wallet.repository.UserActivityRepository;
+import com.tunfin.wallet.service.LedgerService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walks an account's whole history page by page through LedgerService, which covers row
+ * mapping (mapToHistoryResponse) and cursor encoding/decoding. The repository serves the
+ * keyset query from a pre-sorted list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LedgerHistoryBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    int entries;
+
+    @Param({ "50", "200" })
+    int pageSize;
+
+    private LedgerService ledgerService;
+    private UUID accountId;
+
+    @Setup
+    public void setUp() {
+        accountId = UUID.randomUUID();
+
+        // Newest first, as the keyset query returns them
+        List<TransactionRepository.HistoryRow> rows = new ArrayList<>(entries);
+        Map<UUID, Integer> positions = new HashMap<>();
+        LocalDateTime now = LocalDateTime.of(2026, 1, 1, 12, 0);
+        for (int i = 0; i < entries; i++) {
+            Row row = new Row(new UUID(0, entries - i), "REF-" + i, "P2P", "COMPLETED", "Transfer " + i,
+                    BigDecimal.valueOf(i % 2 == 0 ? -1250 : 3000, 2), now.minusSeconds(i));
+            positions.put(row.getId(), i);
+            rows.add(row);
+        }
+
+        TransactionRepository transactionRepository = Stubs.repository(TransactionRepository.class,
+                Map.of("findHistoryPageByAccountId", args -> {
+                    Integer after = positions.get((UUID) args[2]);
+                    int from = after == null ? 0 : after + 1;
+                    int to = Math.min(rows.size(), from + ((Pageable) args[3]).getPageSize());
+                    return rows.subList(from, to);
+                }));
+        var jdbcTemplate = Stubs.jdbcTemplate(Map.of());
+
+        ledgerService = new LedgerService(Stubs.repository(AccountRepository.class, Map.of()),
+                transactionRepository, Stubs.repository(UserActivityRepository.class, Map.of()),
+                new LedgerJdbcRepository(jdbcTemplate), Stubs.transactionTemplate(),
+                new IdempotencyCache(transactionRepository, jdbcTemplate, 1_000, 0.01, 10, 24));
+    }
+
+    @Benchmark
+    public void walkHistory(Blackhole blackhole) {
+        String cursor = null;
+        do {
+            WalletDto.TransactionHistoryPage page = ledgerService.getTransactionHistory(accountId, cursor, pageSize);
+            blackhole.consume(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+    }
+
+    private record Row(UUID getId, String getReferenceId, String getType, String getStatus, String getDescription,
+            BigDecimal getAmount, LocalDateTime getCreatedAt) implements TransactionRepository.HistoryRow {
+    }
+}
@@ -0,0 +1,95 @@
+package com.tunfin.benchmarks;
+
+import com.tunfin.wallet.dto.WalletDto;
+import com.tunfin.wallet.idempotency.IdempotencyCache;
+import com.tunfin.wallet.model.Account;
+import com.tunfin.wallet.model.AccountType;
+import com.tunfin.wallet.repository.AccountRepository;
+import com.tunfin.wallet.repository.LedgerJdbcRepository;
+import com.tunfin.wallet.repository.TransactionRepository;
+import com.tunfin.wallet.repository.UserActivityRepository;
+import com.tunfin.wallet.service.LedgerService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * LedgerService.recordTransaction with the database stubbed out: idempotency check,
+ * BigDecimal sum validation, per-leg balance computation and building the batch rows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LedgerPostingBenchmark {
+
+    @Param({ "2", "8" })
+    int legs;
+
+    private LedgerService ledgerService;
+    private List<WalletDto.LedgerEntryRequest> entries;
+    private long sequence;
+
+    @Setup
+    public void setUp() {
+        Map<UUID, Account> accounts = new HashMap<>();
+        Map<UUID, String> owners = new HashMap<>();
+        entries = new ArrayList<>(legs);
+        BigDecimal leg = new BigDecimal("1.25");
+        for (int i = 0; i < legs; i++) {
+            Account account = Account.builder()
+                    .id(UUID.randomUUID())
+                    .userId("user-" + i)
+                    .currency("TND")
+                    .type(AccountType.LIABILITY)
+                    .balance(new BigDecimal("1000000000.00"))
+                    .build();
+            accounts.put(account.getId(), account);
+            owners.put(account.getId(), account.getUserId());
+            BigDecimal amount = i == 0 ? leg.multiply(BigDecimal.valueOf(1 - legs)) : leg;
+            entries.add(new WalletDto.LedgerEntryRequest(account.getId().toString(), amount));
+        }
+
+        Map<String, Function<Object[], Object>> accountMethods = Map.of("findAllWithLockByIdIn", args -> {
+            List<Account> locked = new ArrayList<>();
+            for (Object id : (Collection<?>) args[0]) {
+                locked.add(accounts.get((UUID) id));
+            }
+            return locked;
+        });
+        Map<String, Function<Object[], Object>> transactionMethods = Map.of(
+                "findByReferenceId", args -> Optional.empty());
+
+        AccountRepository accountRepository = Stubs.repository(AccountRepository.class, accountMethods);
+        TransactionRepository transactionRepository = Stubs.repository(TransactionRepository.class,
+                transactionMethods);
+        var jdbcTemplate = Stubs.jdbcTemplate(owners);
+        IdempotencyCache idempotencyCache = new IdempotencyCache(transactionRepository, jdbcTemplate,
+                1_000_000, 0.01, 10_000, 24);
+
+        ledgerService = new LedgerService(accountRepository, transactionRepository,
+                Stubs.repository(UserActivityRepository.class, Map.of()), new LedgerJdbcRepository(jdbcTemplate),
+                Stubs.transactionTemplate(), idempotencyCache);
+    }
+
+    @Benchmark
+    public WalletDto.TransactionResponse recordTransaction() {
+        return ledgerService.recordTransaction(WalletDto.TransactionRequest.builder()
+                .referenceId("BENCH-" + sequence++)
+                .type("P2P")
+                .description("benchmark")
+                .entries(entries)
+                .build());
+    }
+}
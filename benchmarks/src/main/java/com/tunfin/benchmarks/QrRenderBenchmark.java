@@ -0,0 +1,48 @@
+package com.tunfin.benchmarks;
+
+import com.tunfin.qr.render.QrImageFormat;
+import com.tunfin.qr.render.QrImageRenderer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QR image rendering for a dynamic payment payload at the sizes clients ask for: a fresh
+ * render (dynamic QRs) and a cache hit (static merchant QRs).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QrRenderBenchmark {
+
+    @Param({ "150", "300", "600" })
+    int size;
+
+    @Param({ "PNG", "SVG" })
+    QrImageFormat format;
+
+    private QrImageRenderer renderer;
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        payload = String.format("TUNFIN:PAYMENT:%s:%s:%s:%s:%s", UUID.randomUUID(), "Cafe Bench", "42.500", "TND",
+                LocalDateTime.of(2026, 1, 1, 12, 15));
+        renderer = new QrImageRenderer(1024);
+    }
+
+    @Benchmark
+    public byte[] render() {
+        return renderer.render(payload, size, format, false);
+    }
+
+    @Benchmark
+    public byte[] renderCached() {
+        return renderer.render(payload, size, format, true);
+    }
+}
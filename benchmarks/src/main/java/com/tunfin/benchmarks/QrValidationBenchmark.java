@@ -0,0 +1,94 @@
+package com.tunfin.benchmarks;
+
+import com.tunfin.qr.dto.QrDto;
+import com.tunfin.qr.model.QrCode;
+import com.tunfin.qr.payload.QrPayload;
+import com.tunfin.qr.payload.QrPayloadCodec;
+import com.tunfin.qr.repository.PaymentIntentRepository;
+import com.tunfin.qr.repository.QrCodeRepository;
+import com.tunfin.qr.service.QrService;
+import com.tunfin.qr.state.QrStateStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QrService.validateQr for legacy TUNFIN: payloads and signed TF: payloads, with the
+ * repository answered from memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QrValidationBenchmark {
+
+    private QrService qrService;
+    private QrDto.ValidateQrRequest staticRequest;
+    private QrDto.ValidateQrRequest dynamicRequest;
+    private QrDto.ValidateQrRequest signedRequest;
+
+    @Setup
+    public void setUp() {
+        UUID merchantId = UUID.randomUUID();
+        LocalDateTime expiresAt = LocalDateTime.now().plusYears(1);
+        String staticPayload = String.format("TUNFIN:MERCHANT:%s:%s", merchantId, "Cafe Bench");
+        String dynamicPayload = String.format("TUNFIN:PAYMENT:%s:%s:%s:%s:%s", merchantId, "Cafe Bench",
+                "42.500", "TND", expiresAt);
+
+        Map<String, QrCode> codes = Map.of(
+                staticPayload, QrCode.builder()
+                        .id(UUID.randomUUID())
+                        .merchantId(merchantId)
+                        .qrType(QrCode.QrType.STATIC)
+                        .qrData(staticPayload)
+                        .currency("TND")
+                        .build(),
+                dynamicPayload, QrCode.builder()
+                        .id(UUID.randomUUID())
+                        .merchantId(merchantId)
+                        .qrType(QrCode.QrType.DYNAMIC)
+                        .qrData(dynamicPayload)
+                        .amount(new BigDecimal("42.500"))
+                        .currency("TND")
+                        .expiresAt(expiresAt)
+                        .build());
+
+        QrPayloadCodec codec = new QrPayloadCodec("benchmark-qr-signing-secret");
+        UUID signedId = UUID.randomUUID();
+        String signedPayload = codec.encode(new QrPayload(signedId, merchantId, "Cafe Bench", true,
+                new BigDecimal("42.500"), "TND", expiresAt.withNano(0)));
+
+        QrCodeRepository qrCodeRepository = Stubs.repository(QrCodeRepository.class, Map.of(
+                "findByQrData", args -> Optional.ofNullable(codes.get((String) args[0])),
+                "findStatusById", args -> Optional.of(QrCode.QrStatus.ACTIVE)));
+        qrService = new QrService(qrCodeRepository, Stubs.repository(PaymentIntentRepository.class, Map.of()),
+                null, null, codec, new QrStateStore(new JdbcTemplate(), 30));
+
+        staticRequest = new QrDto.ValidateQrRequest(staticPayload);
+        dynamicRequest = new QrDto.ValidateQrRequest(dynamicPayload);
+        signedRequest = new QrDto.ValidateQrRequest(signedPayload);
+    }
+
+    @Benchmark
+    public QrDto.QrValidationResponse validateStaticQr() {
+        return qrService.validateQr(staticRequest);
+    }
+
+    @Benchmark
+    public QrDto.QrValidationResponse validateDynamicQr() {
+        return qrService.validateQr(dynamicRequest);
+    }
+
+    @Benchmark
+    public QrDto.QrValidationResponse validateSignedQr() {
+        return qrService.validateQr(signedRequest);
+    }
+}
@@ -1,5 +0,0 @@
-package com.tunfin.common;
-
-public class CommonPlaceholder {
-    // Just to ensure compiler has something to compile
-}
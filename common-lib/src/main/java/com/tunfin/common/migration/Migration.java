@@ -0,0 +1,15 @@
+package com.tunfin.common.migration;
+
+/**
+ * A one-off change to existing data, applied once per database by {@link MigrationRunner}
+ * and recorded under its version. Versions are applied in string order, so they are zero
+ * padded. Schema changes that Hibernate can make itself stay on the entities.
+ */
+public interface Migration {
+
+    String version();
+
+    String description();
+
+    void apply();
+}
@@ -0,0 +1,97 @@
+package com.tunfin.common.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the {@link Migration}s that this database has not seen yet. It runs once every
+ * bean is created, after Hibernate has updated the schema but before the web server starts
+ * and before any startup runner, so no request sees data a migration has not reached yet.
+ * Applied versions are recorded in the service's own table, so once the database is up to
+ * date a start costs one query. Nodes starting together take turns on a Postgres advisory
+ * lock and the later ones find the work already done.
+ * <p>
+ * Not a component: each service declares one with its table and lock key.
+ */
+@Slf4j
+public class MigrationRunner implements SmartInitializingSingleton {
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final List<Migration> migrations;
+    private final String table;
+    private final long lockKey;
+
+    /**
+     * @param table   where applied versions are recorded, e.g. {@code wallet_schema_migrations}
+     * @param lockKey advisory lock key, arbitrary but the same on every node of the service
+     */
+    public MigrationRunner(JdbcTemplate jdbcTemplate, List<Migration> migrations, String table, long lockKey) {
+        if (!TABLE_NAME.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid migration table name: " + table);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.migrations = migrations.stream().sorted(Comparator.comparing(Migration::version)).toList();
+        this.table = table;
+        this.lockKey = lockKey;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS %s (
+                    version VARCHAR(50) PRIMARY KEY,
+                    description VARCHAR(255),
+                    applied_at TIMESTAMP NOT NULL,
+                    duration_ms BIGINT NOT NULL
+                )""".formatted(table));
+        // The lock belongs to this connection; the migrations run on others from the pool
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            lock(connection, "SELECT pg_advisory_lock(?)");
+            try {
+                applyPending();
+            } finally {
+                lock(connection, "SELECT pg_advisory_unlock(?)");
+            }
+            return null;
+        });
+    }
+
+    private void applyPending() {
+        Set<String> applied = new HashSet<>(
+                jdbcTemplate.queryForList("SELECT version FROM " + table, String.class));
+        for (Migration migration : migrations) {
+            if (applied.contains(migration.version())) {
+                continue;
+            }
+            log.info(">>> MIGRATION: Applying {} - {}", migration.version(), migration.description());
+            long start = System.nanoTime();
+            migration.apply();
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            jdbcTemplate.update("INSERT INTO " + table + " (version, description, applied_at, duration_ms)"
+                            + " VALUES (?, ?, ?, ?)",
+                    migration.version(), migration.description(), Timestamp.valueOf(LocalDateTime.now()), durationMs);
+            log.info(">>> MIGRATION: Applied {} in {} ms", migration.version(), durationMs);
+        }
+    }
+
+    private void lock(java.sql.Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, lockKey);
+            statement.execute();
+        }
+    }
+}
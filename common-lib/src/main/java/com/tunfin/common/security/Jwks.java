@@ -0,0 +1,112 @@
+package com.tunfin.common.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes JSON Web Key Sets (RFC 7517) holding ES256 verification keys, i.e. EC
+ * keys on P-256. Other key types in a fetched set are skipped.
+ */
+public final class Jwks {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int COORDINATE_BYTES = 32;
+    private static final ECParameterSpec P_256;
+
+    static {
+        try {
+            AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+            parameters.init(new ECGenParameterSpec("secp256r1"));
+            P_256 = parameters.getParameterSpec(ECParameterSpec.class);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("P-256 is not available", e);
+        }
+    }
+
+    private Jwks() {
+    }
+
+    public static String toJson(Map<String, ECPublicKey> keys) {
+        List<Map<String, String>> jwks = new ArrayList<>(keys.size());
+        keys.forEach((kid, key) -> {
+            Map<String, String> jwk = new LinkedHashMap<>();
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("use", "sig");
+            jwk.put("alg", "ES256");
+            jwk.put("kid", kid);
+            jwk.put("x", coordinate(key.getW().getAffineX()));
+            jwk.put("y", coordinate(key.getW().getAffineY()));
+            jwks.add(jwk);
+        });
+        try {
+            return MAPPER.writeValueAsString(Map.of("keys", jwks));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The P-256 keys of a key set by kid. Throws IllegalArgumentException if the document
+     * is not a key set or a P-256 key in it is malformed.
+     */
+    public static Map<String, ECPublicKey> parse(String json) {
+        JsonNode keys;
+        try {
+            keys = MAPPER.readTree(json).path("keys");
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JWKS document", e);
+        }
+        if (!keys.isArray()) {
+            throw new IllegalArgumentException("Invalid JWKS document: no keys");
+        }
+
+        Map<String, ECPublicKey> parsed = new HashMap<>();
+        for (JsonNode jwk : keys) {
+            if (!"EC".equals(jwk.path("kty").asText()) || !"P-256".equals(jwk.path("crv").asText())
+                    || !jwk.hasNonNull("kid")) {
+                continue;
+            }
+            ECPoint point = new ECPoint(
+                    new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("x").asText())),
+                    new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("y").asText())));
+            parsed.put(jwk.get("kid").asText(), toPublicKey(point));
+        }
+        return parsed;
+    }
+
+    private static ECPublicKey toPublicKey(ECPoint point) {
+        try {
+            return (ECPublicKey) KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(point, P_256));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid P-256 key", e);
+        }
+    }
+
+    // Fixed-width big-endian, as RFC 7518 requires; BigInteger may add a sign byte or drop leading zeros
+    private static String coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] fixed = new byte[COORDINATE_BYTES];
+        int length = Math.min(bytes.length, COORDINATE_BYTES);
+        System.arraycopy(bytes, bytes.length - length, fixed, COORDINATE_BYTES - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+}
@@ -0,0 +1,110 @@
+package com.tunfin.common.security;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.interfaces.ECPublicKey;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Identity-service's verification keys, fetched from its JWKS endpoint and held in memory.
+ * Lookups never wait on the network: an unknown kid queues a background refresh (at most
+ * one per {@code minRefreshGap}) and the token is rejected until the key arrives. The set
+ * is also refreshed on a fixed interval, which is what drops retired keys.
+ */
+@Slf4j
+public class JwksKeyCache implements AutoCloseable {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final URI uri;
+    private final long refreshIntervalMs;
+    private final long minRefreshGapNanos;
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+    private volatile Map<String, ECPublicKey> keys = Map.of();
+    private volatile long lastAttemptNanos;
+
+    public JwksKeyCache(String url, long refreshIntervalMs, long minRefreshGapMs) {
+        this.uri = URI.create(url);
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.minRefreshGapNanos = TimeUnit.MILLISECONDS.toNanos(minRefreshGapMs);
+        this.lastAttemptNanos = System.nanoTime() - minRefreshGapNanos;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jwks-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the key set once, then keeps it fresh in the background. A failed first fetch
+     * is logged, not thrown, so a service can start while identity-service is down.
+     */
+    public void start() {
+        refresh();
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The key for a kid, or null if it is not (yet) known.
+     */
+    public ECPublicKey find(String kid) {
+        ECPublicKey key = kid == null ? null : keys.get(kid);
+        if (key == null) {
+            requestRefresh();
+        }
+        return key;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void requestRefresh() {
+        if (System.nanoTime() - lastAttemptNanos < minRefreshGapNanos || !refreshQueued.compareAndSet(false, true)) {
+            return;
+        }
+        scheduler.execute(() -> {
+            try {
+                refresh();
+            } finally {
+                refreshQueued.set(false);
+            }
+        });
+    }
+
+    private void refresh() {
+        lastAttemptNanos = System.nanoTime();
+        try {
+            HttpResponse<String> response = httpClient.send(
+                    HttpRequest.newBuilder(uri).timeout(TIMEOUT).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                log.warn(">>> JWKS: {} answered {}, keeping {} known keys", uri, response.statusCode(), keys.size());
+                return;
+            }
+            Map<String, ECPublicKey> fetched = Jwks.parse(response.body());
+            if (!fetched.keySet().equals(keys.keySet())) {
+                log.info(">>> JWKS: Loaded key ids {} from {}", fetched.keySet(), uri);
+            }
+            keys = Map.copyOf(fetched);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn(">>> JWKS: Could not refresh keys from {}: {}", uri, e.getMessage());
+        }
+    }
+}
@@ -1,25 +1,31 @@
-package com.tunfin.wallet.security;
+package com.tunfin.common.security;
 
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
-import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.util.List;
 
-@Component
-@RequiredArgsConstructor
+/**
+ * Authenticates a request from its bearer token alone. Requests with a missing, invalid or
+ * expired token continue unauthenticated. Add it to a security chain with
+ * {@code addFilterBefore}; it is not a bean, so the servlet container does not run it twice.
+ */
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private final JwtUtil jwtUtil;
+    private final JwtVerifier jwtVerifier;
+
+    public JwtAuthenticationFilter(JwtVerifier jwtVerifier) {
+        this.jwtVerifier = jwtVerifier;
+    }
 
     @Override
     protected void doFilterInternal(
@@ -27,36 +33,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             HttpServletResponse response,
             FilterChain filterChain) throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
-        final String jwt;
-        final String userPhoneNumber;
-        final String role;
-
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        try {
-            jwt = authHeader.substring(7);
-            userPhoneNumber = jwtUtil.extractUsername(jwt);
-            role = jwtUtil.extractRole(jwt);
-
-            if (userPhoneNumber != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                if (jwtUtil.isTokenValid(jwt)) {
-                    SimpleGrantedAuthority authority = (role != null) ? new SimpleGrantedAuthority(role)
-                            : new SimpleGrantedAuthority("ROLE_USER");
 
+        if (authHeader != null && authHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            try {
+                JwtPrincipal principal = jwtVerifier.verify(authHeader.substring(7));
+                if (principal.subject() != null) {
+                    SimpleGrantedAuthority authority = new SimpleGrantedAuthority(
+                            principal.role() != null ? principal.role() : "ROLE_USER");
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userPhoneNumber,
-                            null,
-                            Collections.singletonList(authority));
-
+                            principal, null, List.of(authority));
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
                 }
+            } catch (JwtException | IllegalArgumentException e) {
+                // Token invalid or expired
             }
-        } catch (Exception e) {
-            // Token invalid or expired
         }
 
         filterChain.doFilter(request, response);
@@ -0,0 +1,60 @@
+package com.tunfin.common.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+
+import java.security.Key;
+import java.security.interfaces.ECPublicKey;
+import java.time.Instant;
+import java.util.Date;
+import java.util.function.Function;
+
+/**
+ * Picks the verification key from the token header: ES256 tokens by their kid, HS256 tokens
+ * with the shared secret while one is still configured for tokens issued before the switch
+ * to ES256. An HS256 token issued at or after the cutoff is refused, so a leaked secret cannot
+ * mint new tokens. jjwt checks the key type against the algorithm, so neither key can stand
+ * in for the other.
+ */
+public class JwtKeyResolver extends SigningKeyResolverAdapter {
+
+    private final Key hmacKey;
+    private final Instant hmacIssuedBefore;
+    private final Function<String, ECPublicKey> publicKeys;
+
+    /**
+     * @param hmacKey          the HS256 key, or null to reject HS256 tokens
+     * @param hmacIssuedBefore HS256 tokens must have been issued before this instant, or null
+     *                         when HS256 tokens are still being issued
+     * @param publicKeys       ES256 keys by kid, returning null for unknown ids
+     */
+    public JwtKeyResolver(Key hmacKey, Instant hmacIssuedBefore, Function<String, ECPublicKey> publicKeys) {
+        this.hmacKey = hmacKey;
+        this.hmacIssuedBefore = hmacIssuedBefore;
+        this.publicKeys = publicKeys;
+    }
+
+    @Override
+    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+        SignatureAlgorithm algorithm = SignatureAlgorithm.forName(header.getAlgorithm());
+        if (algorithm == SignatureAlgorithm.ES256) {
+            ECPublicKey key = publicKeys.apply(header.getKeyId());
+            if (key == null) {
+                throw new UnsupportedJwtException("Unknown key id: " + header.getKeyId());
+            }
+            return key;
+        }
+        if (algorithm == SignatureAlgorithm.HS256 && hmacKey != null) {
+            Date issuedAt = claims.getIssuedAt();
+            if (hmacIssuedBefore != null
+                    && (issuedAt == null || !issuedAt.toInstant().isBefore(hmacIssuedBefore))) {
+                throw new UnsupportedJwtException("HS256 tokens issued after " + hmacIssuedBefore + " are not accepted");
+            }
+            return hmacKey;
+        }
+        throw new UnsupportedJwtException("Tokens signed with " + algorithm + " are not accepted");
+    }
+}
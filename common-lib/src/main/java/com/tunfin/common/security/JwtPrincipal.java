@@ -0,0 +1,31 @@
+package com.tunfin.common.security;
+
+import java.security.Principal;
+import java.time.Instant;
+
+/**
+ * The claims of a verified token. Immutable, so one instance can be cached and shared by
+ * every request that presents the same token.
+ *
+ * @param subject      the user's phone number
+ * @param userId       the user's id, or null for tokens issued without one
+ * @param role         the granted role, e.g. {@code ROLE_ADMIN}, or null
+ * @param tokenVersion the version the token was issued at, 0 when absent
+ * @param expiresAt    when the token stops being accepted
+ */
+public record JwtPrincipal(
+        String subject,
+        String userId,
+        String role,
+        int tokenVersion,
+        Instant expiresAt) implements Principal {
+
+    @Override
+    public String getName() {
+        return subject;
+    }
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
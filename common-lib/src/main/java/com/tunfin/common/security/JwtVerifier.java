@@ -0,0 +1,146 @@
+package com.tunfin.common.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SigningKeyResolver;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies tokens issued by identity-service, with keys chosen by a {@link JwtKeyResolver}.
+ * The parser is built once and shared by all threads. Recently verified tokens are kept in an LRU keyed by their SHA-256, so a
+ * client repeating its token skips the signature check and JSON parse; an entry is only
+ * served until the token's own expiry. A {@link VersionCheck}, when given, is asked about
+ * cached tokens too, and a revoked token is dropped from the cache.
+ */
+public class JwtVerifier {
+
+    /**
+     * Tells whether a verified token has been revoked since it was issued.
+     */
+    @FunctionalInterface
+    public interface VersionCheck {
+
+        VersionCheck NONE = principal -> true;
+
+        boolean isCurrent(JwtPrincipal principal);
+    }
+
+    private record TokenKey(long high, long low) {
+    }
+
+    public record Stats(long verifications, long cacheHits, long failures, double cacheHitRate,
+            double averageVerifyMicros) {
+    }
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JwtParser parser;
+    private final Map<TokenKey, JwtPrincipal> verified;
+    private final VersionCheck versionCheck;
+
+    private final AtomicLong verifications = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong verifyNanos = new AtomicLong();
+
+    public JwtVerifier(SigningKeyResolver keyResolver, int cacheSize) {
+        this(keyResolver, cacheSize, VersionCheck.NONE);
+    }
+
+    public JwtVerifier(SigningKeyResolver keyResolver, int cacheSize, VersionCheck versionCheck) {
+        this.versionCheck = versionCheck;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(keyResolver)
+                .build();
+        this.verified = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TokenKey, JwtPrincipal> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Returns the principal for a token, or throws a {@link JwtException} if the signature
+     * does not match, the token has expired or it has been revoked.
+     */
+    public JwtPrincipal verify(String token) {
+        long start = System.nanoTime();
+        verifications.incrementAndGet();
+        try {
+            TokenKey key = keyOf(token);
+            JwtPrincipal cached = verified.get(key);
+            if (cached != null) {
+                if (!cached.isExpired(Instant.now())) {
+                    cacheHits.incrementAndGet();
+                    return current(key, cached);
+                }
+                verified.remove(key);
+            }
+
+            JwtPrincipal principal = toPrincipal(parser.parseClaimsJws(token).getBody());
+            verified.put(key, principal);
+            return current(key, principal);
+        } catch (JwtException | IllegalArgumentException e) {
+            failures.incrementAndGet();
+            throw e;
+        } finally {
+            verifyNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    public Stats getStats() {
+        long total = verifications.get();
+        long hits = cacheHits.get();
+        return new Stats(total, hits, failures.get(),
+                total == 0 ? 0 : (double) hits / total,
+                total == 0 ? 0 : verifyNanos.get() / 1_000.0 / total);
+    }
+
+    private JwtPrincipal current(TokenKey key, JwtPrincipal principal) {
+        if (!versionCheck.isCurrent(principal)) {
+            verified.remove(key);
+            throw new JwtException("Token has been revoked");
+        }
+        return principal;
+    }
+
+    private static JwtPrincipal toPrincipal(Claims claims) {
+        // Every token identity-service issues expires; one that does not could be cached forever
+        if (claims.getExpiration() == null) {
+            throw new MalformedJwtException("Token has no expiration");
+        }
+        Integer version = claims.get("ver", Integer.class);
+        return new JwtPrincipal(
+                claims.getSubject(),
+                claims.get("userId", String.class),
+                claims.get("role", String.class),
+                version == null ? 0 : version,
+                claims.getExpiration().toInstant());
+    }
+
+    // The raw token is never kept; 128 bits of its digest are enough to tell tokens apart
+    private static TokenKey keyOf(String token) {
+        MessageDigest digest = SHA_256.get();
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        return new TokenKey(hash.getLong(), hash.getLong());
+    }
+}
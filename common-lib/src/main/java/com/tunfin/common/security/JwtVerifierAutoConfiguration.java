@@ -0,0 +1,61 @@
+package com.tunfin.common.security;
+
+import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Gives every service depending on common-lib a {@link JwtVerifier} that checks ES256
+ * tokens against identity-service's published key set, and refuses tokens revoked since
+ * they were issued. Identity-service holds the keys and the versions itself and declares its
+ * own verifier, which turns this configuration off.
+ */
+@AutoConfiguration
+@ConditionalOnMissingBean(JwtVerifier.class)
+public class JwtVerifierAutoConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public JwksKeyCache jwksKeyCache(
+            @Value("${jwt.jwks.url:http://localhost:8081/.well-known/jwks.json}") String url,
+            @Value("${jwt.jwks.refresh-interval-ms:300000}") long refreshIntervalMs,
+            @Value("${jwt.jwks.min-refresh-gap-ms:10000}") long minRefreshGapMs) {
+        return new JwksKeyCache(url, refreshIntervalMs, minRefreshGapMs);
+    }
+
+    @Bean
+    public RemoteTokenVersions remoteTokenVersions(
+            @Value("${jwt.revocation.url:http://localhost:8081/api/users/{userId}/token-version}") String url,
+            @Value("${jwt.revocation.service-key:}") String serviceKey,
+            @Value("${jwt.revocation.ttl-seconds:30}") long ttlSeconds,
+            @Value("${jwt.revocation.cache-size:100000}") int cacheSize) {
+        // Identity-service only answers other services, so without a key every token would be refused
+        if (serviceKey.isBlank()) {
+            throw new IllegalArgumentException("jwt.revocation.service-key is required");
+        }
+        return new RemoteTokenVersions(url, serviceKey, ttlSeconds, cacheSize);
+    }
+
+    @Bean
+    public JwtVerifier jwtVerifier(JwksKeyCache jwksKeyCache, RemoteTokenVersions remoteTokenVersions,
+            @Value("${jwt.secret:}") String secret,
+            @Value("${jwt.hs256.issued-before:}") String hmacIssuedBefore,
+            @Value("${jwt.verify.cache-size:10000}") int cacheSize) {
+        // The shared secret only remains for HS256 tokens issued before the switch to ES256,
+        // so it is refused without a cutoff that bounds which of them are still honoured
+        if (secret.isBlank()) {
+            return new JwtVerifier(new JwtKeyResolver(null, null, jwksKeyCache::find), cacheSize,
+                    remoteTokenVersions);
+        }
+        if (hmacIssuedBefore.isBlank()) {
+            throw new IllegalArgumentException("jwt.hs256.issued-before is required when jwt.secret is set");
+        }
+        var hmacKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        return new JwtVerifier(new JwtKeyResolver(hmacKey, Instant.parse(hmacIssuedBefore), jwksKeyCache::find),
+                cacheSize, remoteTokenVersions);
+    }
+}
@@ -0,0 +1,97 @@
+package com.tunfin.common.security;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Current token version per user, fetched from identity-service at most once per TTL. A
+ * token is revoked once the user's version has moved past the one it was issued with, so a
+ * revocation reaches this service within one TTL. When identity-service cannot be reached
+ * the last version fetched is kept; a user never fetched is refused until it answers.
+ */
+@Slf4j
+public class RemoteTokenVersions implements JwtVerifier.VersionCheck {
+
+    private record Entry(int version, long loadedAtNanos) {
+    }
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(2);
+    private static final String SERVICE_KEY_HEADER = "X-Service-Key";
+
+    // Stands in for users that no longer exist, so their tokens are rejected until the TTL runs out
+    private static final int MISSING = Integer.MAX_VALUE;
+
+    private final String urlTemplate;
+    private final String serviceKey;
+    private final long ttlNanos;
+    private final HttpClient httpClient;
+    private final Map<String, Entry> versions;
+
+    /**
+     * @param urlTemplate the version endpoint, with {@code {userId}} where the user's id goes
+     */
+    public RemoteTokenVersions(String urlTemplate, String serviceKey, long ttlSeconds, int cacheSize) {
+        this.urlTemplate = urlTemplate;
+        this.serviceKey = serviceKey;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.httpClient = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+        this.versions = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    @Override
+    public boolean isCurrent(JwtPrincipal principal) {
+        // Tokens without a user id cannot be revoked, so they are not accepted either
+        if (principal.userId() == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        Entry entry = versions.get(principal.userId());
+        if (entry == null || now - entry.loadedAtNanos() > ttlNanos) {
+            Integer fetched = fetch(principal.userId());
+            if (fetched != null) {
+                entry = new Entry(fetched, now);
+                versions.put(principal.userId(), entry);
+            } else if (entry == null) {
+                return false;
+            }
+        }
+        return principal.tokenVersion() >= entry.version();
+    }
+
+    private Integer fetch(String userId) {
+        URI uri = URI.create(urlTemplate.replace("{userId}", userId));
+        try {
+            HttpResponse<String> response = httpClient.send(
+                    HttpRequest.newBuilder(uri).timeout(TIMEOUT).header(SERVICE_KEY_HEADER, serviceKey).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 404) {
+                return MISSING;
+            }
+            if (response.statusCode() != 200) {
+                log.warn(">>> TOKEN VERSIONS: {} answered {}", uri, response.statusCode());
+                return null;
+            }
+            return Integer.valueOf(response.body().trim());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            log.warn(">>> TOKEN VERSIONS: Could not fetch the version for {}: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+}
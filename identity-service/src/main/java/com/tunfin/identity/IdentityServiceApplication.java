@@ -2,8 +2,10 @@ package com.tunfin.identity;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class IdentityServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(IdentityServiceApplication.class, args);
@@ -12,33 +14,28 @@ public class IdentityServiceApplication {
     @org.springframework.context.annotation.Bean
     public org.springframework.boot.CommandLineRunner seedAdmin(
             com.tunfin.identity.repository.UserRepository userRepository,
+            com.tunfin.identity.directory.RecipientDirectory recipientDirectory,
             org.springframework.security.crypto.password.PasswordEncoder passwordEncoder) {
         return args -> {
             var logger = org.slf4j.LoggerFactory.getLogger(IdentityServiceApplication.class);
 
-            // 1. Data Migration: Normalize existing phone numbers
-            logger.info(">>> MIGRATION: Normalizing existing phone numbers...");
-            userRepository.findAll().forEach(u -> {
-                String original = u.getPhoneNumber();
-                String normalized = com.tunfin.identity.service.AuthService.normalizePhone(original);
-                if (!original.equals(normalized)) {
-                    u.setPhoneNumber(normalized);
-                    userRepository.save(u);
-                    logger.info(">>> MIGRATION: Normalized {} -> {}", original, normalized);
-                }
-            });
-
+            // Phone numbers are normalized by the migration runner, which runs first
             var adminId = java.util.UUID.fromString("00000000-0000-0000-0000-000000000001");
             var phoneNumber = "21611111111"; // Use no spaces for reliability
 
-            userRepository.findByPhoneNumber(phoneNumber).ifPresent(u -> {
-                if (!u.getId().equals(adminId)) {
-                    logger.info(">>> SEED: Removing conflicting user with phone: {}", phoneNumber);
-                    userRepository.delete(u);
-                }
+            var existing = userRepository.findByPhoneNumber(phoneNumber);
+            if (existing.isPresent() && existing.get().getRole() == com.tunfin.identity.model.Role.ADMIN) {
+                // Nothing to do; in particular no BCrypt encode on every start
+                logger.info(">>> SEED: Master Admin already present: {}", phoneNumber);
+                return;
+            }
+            existing.ifPresent(u -> {
+                logger.info(">>> SEED: Removing conflicting user with phone: {}", phoneNumber);
+                userRepository.delete(u);
+                recipientDirectory.remove(u.getId());
             });
 
-            logger.info(">>> SEED: Synchronizing Master Admin Account...");
+            logger.info(">>> SEED: Creating Master Admin Account...");
             var admin = com.tunfin.identity.model.User.builder()
                     .id(adminId)
                     .phoneNumber(phoneNumber)
@@ -51,7 +48,7 @@ public class IdentityServiceApplication {
                     .dateOfBirth(java.time.LocalDate.of(1980, 1, 1))
                     .build();
             userRepository.save(admin);
-            logger.info(">>> SEED: Master Admin synchronized: {} / password123", phoneNumber);
+            logger.info(">>> SEED: Master Admin created: {} / password123", phoneNumber);
         };
     }
 }
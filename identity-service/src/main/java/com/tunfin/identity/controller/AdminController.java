@@ -1,26 +1,114 @@
 package com.tunfin.identity.controller;
 
-import com.tunfin.identity.model.User;
-import com.tunfin.identity.repository.UserRepository;
-import com.tunfin.identity.service.KycService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tunfin.identity.dto.AdminDto;
+import com.tunfin.identity.model.Role;
+import com.tunfin.identity.security.PasswordHasher;
+import com.tunfin.identity.service.AdminUserService;
+import com.tunfin.identity.storage.KycFileServer;
+import com.tunfin.identity.storage.ThumbnailCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/admin")
 @RequiredArgsConstructor
 public class AdminController {
 
-    private final UserRepository userRepository;
-    private final KycService kycService; // Assuming we might need this later
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final AdminUserService adminUserService;
+    private final PasswordHasher passwordHasher;
+    private final KycFileServer kycFileServer;
+    private final ThumbnailCache thumbnailCache;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getAllUsers() {
-        // In real app, use DTO to hide password/sensitive info
-        return ResponseEntity.ok(userRepository.findAll());
+    public ResponseEntity<List<AdminDto.UserSummary>> getUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return page(adminUserService.getUsers(cursor, limit));
+    }
+
+    @PutMapping("/users/{id}/role")
+    public ResponseEntity<Void> changeRole(@PathVariable UUID id, @RequestParam Role role) {
+        adminUserService.changeRole(id, role);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PutMapping("/users/{id}/active")
+    public ResponseEntity<Void> setActive(@PathVariable UUID id, @RequestParam boolean active) {
+        adminUserService.setActive(id, active);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Every user, one JSON object per line, for exports
+    @GetMapping("/users/stream")
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        return ndjson(adminUserService::forEachUser);
+    }
+
+    // The KYC review queue, oldest submission first
+    @GetMapping("/kyc/pending")
+    public ResponseEntity<List<AdminDto.UserSummary>> getPendingKycUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return page(adminUserService.getPendingKycUsers(cursor, limit));
+    }
+
+    @GetMapping("/kyc/pending/stream")
+    public ResponseEntity<StreamingResponseBody> streamPendingKycUsers() {
+        return ndjson(adminUserService::forEachPendingKycUser);
+    }
+
+    @GetMapping("/stats/password-hashing")
+    public ResponseEntity<PasswordHasher.Stats> getPasswordHashingStats() {
+        return ResponseEntity.ok(passwordHasher.getStats());
+    }
+
+    @GetMapping("/stats/kyc-documents")
+    public ResponseEntity<Map<String, Long>> getKycDocumentStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("served", kycFileServer.getServedCount());
+        stats.put("notModified", kycFileServer.getNotModifiedCount());
+        stats.put("partial", kycFileServer.getPartialCount());
+        stats.put("sendfile", kycFileServer.getSendfileCount());
+        stats.put("thumbnailHits", thumbnailCache.getHits());
+        stats.put("thumbnailMisses", thumbnailCache.getMisses());
+        stats.put("thumbnailCacheBytes", thumbnailCache.getCachedBytes());
+        return ResponseEntity.ok(stats);
+    }
+
+    // Body stays a plain array; the cursor for the next page travels in a header
+    static ResponseEntity<List<AdminDto.UserSummary>> page(AdminDto.UserPage page) {
+        var response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    private ResponseEntity<StreamingResponseBody> ndjson(Consumer<Consumer<AdminDto.UserSummary>> source) {
+        StreamingResponseBody body = out -> source.accept(user -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(user));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
 }
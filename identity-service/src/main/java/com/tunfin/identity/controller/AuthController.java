@@ -9,6 +9,9 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.security.Principal;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
@@ -25,8 +28,21 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<AuthDto.AuthResponse> authenticate(
+    public CompletableFuture<ResponseEntity<AuthDto.AuthResponse>> authenticate(
             @RequestBody AuthDto.AuthRequest request) {
-        return ResponseEntity.ok(authService.authenticate(request));
+        return authService.authenticate(request).thenApply(ResponseEntity::ok);
+    }
+
+    // Revokes every earlier token and answers with a new one
+    @PostMapping("/password")
+    public CompletableFuture<ResponseEntity<AuthDto.AuthResponse>> changePassword(Principal principal,
+            @jakarta.validation.Valid @RequestBody AuthDto.ChangePasswordRequest request) {
+        return authService.changePassword(principal.getName(), request).thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/logout-all")
+    public ResponseEntity<Void> logoutAll(Principal principal) {
+        authService.logoutAll(principal.getName());
+        return ResponseEntity.noContent().build();
     }
 }
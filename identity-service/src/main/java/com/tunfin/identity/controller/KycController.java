@@ -1,6 +1,9 @@
 package com.tunfin.identity.controller;
 
+import com.tunfin.identity.service.AdminUserService;
 import com.tunfin.identity.service.KycService;
+import com.tunfin.identity.storage.KycFileServer;
+import com.tunfin.identity.storage.ThumbnailCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -17,6 +20,9 @@ import java.util.UUID;
 public class KycController {
 
     private final KycService kycService;
+    private final AdminUserService adminUserService;
+    private final KycFileServer kycFileServer;
+    private final ThumbnailCache thumbnailCache;
 
     @PostMapping("/upload")
     public ResponseEntity<?> upload(@RequestParam("userId") UUID userId,
@@ -28,14 +34,25 @@ public class KycController {
         return ResponseEntity.ok().build();
     }
 
+    // Raw body instead of multipart: the request stream goes straight to the store, with no
+    // spooled copy of the part in between
+    @PostMapping(value = "/documents", consumes = { "image/*", "application/pdf", "application/octet-stream" })
+    public ResponseEntity<?> uploadStream(@RequestParam("userId") UUID userId,
+            @RequestParam("type") com.tunfin.identity.model.KycDocument.DocumentType type,
+            jakarta.servlet.http.HttpServletRequest request) throws java.io.IOException {
+        return ResponseEntity.ok(kycService.uploadDocument(userId, request.getInputStream(),
+                request.getContentType(), null, type));
+    }
+
     @GetMapping("/documents")
     public ResponseEntity<?> getDocuments(@RequestParam UUID userId) {
         return ResponseEntity.ok(kycService.getUserDocuments(userId));
     }
 
     @GetMapping("/pending")
-    public ResponseEntity<?> getPendingUsers() {
-        return ResponseEntity.ok(kycService.getPendingUsers());
+    public ResponseEntity<?> getPendingUsers(@RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return AdminController.page(adminUserService.getPendingKycUsers(cursor, limit));
     }
 
     @PostMapping("/review/{userId}")
@@ -63,9 +80,26 @@ public class KycController {
         return ResponseEntity.ok().build();
     }
 
+    // Range requests and If-None-Match are answered here; large bodies go out through sendfile
     @GetMapping("/view/{filename}")
-    public org.springframework.core.io.Resource viewDocument(@PathVariable String filename) {
-        java.nio.file.Path path = java.nio.file.Paths.get("uploads", "kyc", filename);
-        return new org.springframework.core.io.FileSystemResource(path);
+    public void viewDocument(@PathVariable String filename, jakarta.servlet.http.HttpServletRequest request,
+            jakarta.servlet.http.HttpServletResponse response) throws java.io.IOException {
+        kycFileServer.serve(filename, request, response);
+    }
+
+    @GetMapping("/thumbnail/{filename}")
+    public ResponseEntity<byte[]> thumbnail(@PathVariable String filename,
+            @RequestParam(defaultValue = "" + ThumbnailCache.DEFAULT_WIDTH) int width,
+            org.springframework.web.context.request.WebRequest webRequest) {
+        ThumbnailCache.Thumbnail thumbnail = thumbnailCache.get(filename, width);
+        if (webRequest.checkNotModified(thumbnail.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(org.springframework.http.MediaType.IMAGE_JPEG)
+                .cacheControl(org.springframework.http.CacheControl
+                        .maxAge(365, java.util.concurrent.TimeUnit.DAYS).cachePrivate().immutable())
+                .eTag(thumbnail.etag())
+                .body(thumbnail.jpeg());
     }
 }
@@ -1,10 +1,19 @@
 package com.tunfin.identity.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tunfin.identity.directory.RecipientDirectory;
+import com.tunfin.identity.directory.SearchQuota;
+import com.tunfin.identity.dto.UserDto;
 import com.tunfin.identity.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.security.Principal;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -15,42 +24,94 @@ public class UserController {
 
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(UserController.class);
     private final UserRepository userRepository;
+    private final RecipientDirectory recipientDirectory;
+    private final SearchQuota searchQuota;
+    private final ObjectMapper objectMapper;
+
+    @Value("${identity.directory.max-batch-size:5000}")
+    private int maxBatchSize;
 
     @GetMapping("/search")
     public ResponseEntity<Map<String, String>> searchByPhone(@RequestParam String phoneNumber) {
-        String cleanPhone = com.tunfin.identity.service.AuthService.normalizePhone(phoneNumber);
-        logger.info(">>> SEARCH: Input phone: '{}', Normalized: '{}'", phoneNumber, cleanPhone);
-
-        return userRepository.findByPhoneNumber(cleanPhone)
-                .map(user -> {
-                    logger.info(">>> SEARCH: Found user: {}", user.getFullName());
+        return recipientDirectory.find(phoneNumber)
+                .map(recipient -> {
                     Map<String, String> res = new HashMap<>();
-                    res.put("userId", user.getId().toString());
-                    res.put("fullName", user.getFullName());
-                    res.put("kycLevel", user.getKycLevel().toString());
+                    res.put("userId", recipient.userId().toString());
+                    res.put("fullName", recipient.fullName());
+                    res.put("kycLevel", recipient.kycLevel().toString());
                     return ResponseEntity.ok(res);
                 })
                 .orElseGet(() -> {
-                    logger.warn(">>> SEARCH: User NOT FOUND for normalized phone: '{}'", cleanPhone);
+                    logger.debug(">>> SEARCH: No user for phone: '{}'", phoneNumber);
                     return ResponseEntity.notFound().build();
                 });
     }
 
+    // Contact sync: which of the given numbers belong to users; unknown numbers are left out.
+    // The array is written as it is produced rather than built up as one response object.
+    @PostMapping("/search/batch")
+    public ResponseEntity<StreamingResponseBody> searchByPhones(Principal principal,
+            @jakarta.validation.Valid @RequestBody UserDto.BatchSearchRequest request) {
+        if (request.getPhoneNumbers().size() > maxBatchSize) {
+            throw new RuntimeException("Too many phone numbers, at most " + maxBatchSize + " per request");
+        }
+        searchQuota.consume(principal.getName(), request.getPhoneNumbers().size());
+        var found = recipientDirectory.findAll(request.getPhoneNumbers());
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartArray();
+                for (var entry : found) {
+                    json.writeStartObject();
+                    json.writeStringField("phoneNumber", entry.getKey());
+                    json.writeStringField("userId", entry.getValue().userId().toString());
+                    json.writeStringField("fullName", entry.getValue().fullName());
+                    json.writeStringField("kycLevel", entry.getValue().kycLevel().toString());
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Map<String, String>> getUserById(@PathVariable java.util.UUID id) {
         return userRepository.findById(id)
-                .map(user -> {
-                    Map<String, String> res = new HashMap<>();
-                    res.put("userId", user.getId().toString());
-                    res.put("fullName", user.getFullName());
-                    res.put("email", user.getEmail());
-                    res.put("fcmToken", user.getFcmToken());
-                    res.put("kycLevel", user.getKycLevel().toString());
-                    return ResponseEntity.ok(res);
-                })
+                .map(user -> ResponseEntity.ok(toProfile(user)))
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // The other services refuse tokens issued before this version; see RemoteTokenVersions
+    @GetMapping("/{id}/token-version")
+    public ResponseEntity<Integer> getTokenVersion(@PathVariable java.util.UUID id) {
+        return userRepository.findTokenVersionById(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Profiles for many users in one query, for bulk payouts; unknown ids are left out
+    @PostMapping("/batch")
+    public ResponseEntity<java.util.List<Map<String, String>>> getUsersByIds(
+            @RequestBody java.util.List<java.util.UUID> ids) {
+        if (ids.size() > maxBatchSize) {
+            throw new RuntimeException("Too many users, at most " + maxBatchSize + " per request");
+        }
+        return ResponseEntity.ok(userRepository.findAllById(ids).stream()
+                .map(UserController::toProfile)
+                .toList());
+    }
+
+    // Called by payment-service with tokens FCM no longer accepts
+    @PostMapping("/fcm-tokens/invalidate")
+    public ResponseEntity<Map<String, Integer>> invalidateFcmTokens(@RequestBody java.util.List<String> tokens) {
+        if (tokens.size() > maxBatchSize) {
+            throw new RuntimeException("Too many tokens, at most " + maxBatchSize + " per request");
+        }
+        int cleared = tokens.isEmpty() ? 0 : userRepository.clearFcmTokens(tokens);
+        return ResponseEntity.ok(Map.of("cleared", cleared));
+    }
+
     @PostMapping("/fcm-token")
     public ResponseEntity<?> updateFcmToken(@RequestParam java.util.UUID userId, @RequestParam String token) {
         return userRepository.findById(userId)
@@ -61,4 +122,14 @@ public class UserController {
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
+
+    private static Map<String, String> toProfile(com.tunfin.identity.model.User user) {
+        Map<String, String> res = new HashMap<>();
+        res.put("userId", user.getId().toString());
+        res.put("fullName", user.getFullName());
+        res.put("email", user.getEmail());
+        res.put("fcmToken", user.getFcmToken());
+        res.put("kycLevel", user.getKycLevel().toString());
+        return res;
+    }
 }
@@ -0,0 +1,50 @@
+package com.tunfin.identity.directory;
+
+/**
+ * Packs a phone number into a {@code long}: the digit count in the top bits and the digits
+ * as a number below, so "021..." and "21..." stay distinct. E.164 numbers have at most 15
+ * digits, which fit in 50 bits.
+ */
+public final class PhoneKeys {
+
+    public static final long INVALID = -1;
+
+    private static final int MAX_DIGITS = 15;
+    private static final int LENGTH_SHIFT = 50;
+    private static final long TUNISIA_PREFIX = 216_00_000_000L;
+
+    private PhoneKeys() {
+    }
+
+    /**
+     * The key of a phone number as typed by a user, normalized the same way as
+     * {@link com.tunfin.identity.service.AuthService#normalizePhone}: non-digits are dropped
+     * and 8-digit local numbers get the 216 prefix. Returns {@link #INVALID} if nothing is left
+     * or the number is too long.
+     */
+    public static long of(String phoneNumber) {
+        if (phoneNumber == null) {
+            return INVALID;
+        }
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                continue;
+            }
+            if (++digits > MAX_DIGITS) {
+                return INVALID;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (digits == 0) {
+            return INVALID;
+        }
+        if (digits == 8) {
+            value += TUNISIA_PREFIX;
+            digits = 11;
+        }
+        return ((long) digits << LENGTH_SHIFT) | value;
+    }
+}
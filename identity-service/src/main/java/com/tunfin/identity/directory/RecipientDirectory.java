@@ -0,0 +1,314 @@
+package com.tunfin.identity.directory;
+
+import com.tunfin.identity.model.KycLevel;
+import com.tunfin.identity.model.User;
+import com.tunfin.identity.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.LongFunction;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Every user's recipient card by phone number, held in memory for P2P recipient search and
+ * contact sync. Loaded once the application is ready, updated after commit when this node
+ * registers a user or changes a KYC level, and caught up with the other nodes' changes
+ * through the users.updated_at column. A user's previous number is dropped when a newer card
+ * arrives under another one. Deletes leave no row to catch up on, so the whole directory is
+ * also re-read periodically. Until the first load completes, lookups go to the database.
+ */
+@Component
+@Slf4j
+public class RecipientDirectory {
+
+    public record Recipient(UUID userId, String fullName, KycLevel kycLevel) {
+    }
+
+    private static final String SELECT_USERS = "SELECT id, phone_number, full_name, kyc_level, updated_at FROM users";
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    // Clocks of the nodes writing updated_at may disagree, so each catch-up re-reads a margin
+    private final long overlapSeconds;
+
+    private final int expectedUsers;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private LongKeyMap<Recipient> byPhone;
+    // Each user's current key, so a changed number does not stay resolvable under the old one
+    private Map<UUID, Long> keyByUser;
+    private volatile boolean loaded;
+    private LocalDateTime syncedUpTo;
+
+    public RecipientDirectory(UserRepository userRepository, JdbcTemplate jdbcTemplate,
+            @Value("${identity.directory.expected-users:100000}") int expectedUsers,
+            @Value("${identity.directory.sync-overlap-seconds:60}") long overlapSeconds) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.overlapSeconds = overlapSeconds;
+        this.expectedUsers = expectedUsers;
+        this.byPhone = new LongKeyMap<>(expectedUsers);
+        this.keyByUser = new HashMap<>();
+    }
+
+    // After the startup runners, which may still rewrite phone numbers
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        int count = reload();
+        loaded = true;
+        log.info(">>> DIRECTORY: Loaded {} recipients in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Scheduled(fixedDelayString = "${identity.directory.sync-interval-ms:30000}")
+    public void catchUp() {
+        if (!loaded || syncedUpTo == null) {
+            return;
+        }
+        int count = sync(SELECT_USERS + " WHERE updated_at >= ?",
+                Timestamp.valueOf(syncedUpTo.minusSeconds(overlapSeconds)));
+        log.debug(">>> DIRECTORY: Caught up on {} recipients", count);
+    }
+
+    // Drops the users deleted on other nodes, which the catch-up cannot see
+    @Scheduled(fixedDelayString = "${identity.directory.full-sync-interval-ms:600000}",
+            initialDelayString = "${identity.directory.full-sync-interval-ms:600000}")
+    public void resync() {
+        if (!loaded) {
+            return;
+        }
+        long start = System.nanoTime();
+        int count = reload();
+        log.debug(">>> DIRECTORY: Re-read {} recipients in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * The recipient for a phone number as typed, in any format {@code normalizePhone} accepts.
+     */
+    public Optional<Recipient> find(String phoneNumber) {
+        long key = PhoneKeys.of(phoneNumber);
+        if (key == PhoneKeys.INVALID) {
+            return Optional.empty();
+        }
+        if (!loaded) {
+            return userRepository.findByPhoneNumber(com.tunfin.identity.service.AuthService.normalizePhone(phoneNumber))
+                    .map(RecipientDirectory::toRecipient);
+        }
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(byPhone.get(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The recipients among many phone numbers, in request order and keyed by the number as
+     * given; numbers that are not registered are left out. Numbers are normalized in one
+     * pass and resolved from memory, or with a single query before the first load.
+     */
+    public List<Map.Entry<String, Recipient>> findAll(Collection<String> phoneNumbers) {
+        Map<Long, String> requested = new LinkedHashMap<>();
+        for (String phoneNumber : phoneNumbers) {
+            long key = PhoneKeys.of(phoneNumber);
+            if (key != PhoneKeys.INVALID) {
+                requested.putIfAbsent(key, phoneNumber);
+            }
+        }
+        if (requested.isEmpty()) {
+            return List.of();
+        }
+
+        if (!loaded) {
+            Map<Long, Recipient> resolved = selectByPhoneNumbers(requested.values());
+            return collect(requested, resolved::get);
+        }
+        lock.readLock().lock();
+        try {
+            return collect(requested, byPhone::get);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static List<Map.Entry<String, Recipient>> collect(Map<Long, String> requested,
+            LongFunction<Recipient> lookup) {
+        List<Map.Entry<String, Recipient>> found = new ArrayList<>();
+        requested.forEach((key, phoneNumber) -> {
+            Recipient recipient = lookup.apply(key);
+            if (recipient != null) {
+                found.add(Map.entry(phoneNumber, recipient));
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Publishes a user's current card once the surrounding transaction, if any, commits.
+     */
+    public void update(User user) {
+        long key = PhoneKeys.of(user.getPhoneNumber());
+        Recipient recipient = toRecipient(user);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(key, recipient);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(key, recipient);
+            }
+        });
+    }
+
+    /**
+     * Withdraws a deleted user's card once the surrounding transaction, if any, commits.
+     */
+    public void remove(UUID userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(userId);
+            }
+        });
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byPhone.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private synchronized int sync(String sql, Object... args) {
+        return read(this::put, sql, args);
+    }
+
+    /**
+     * Reads every user into fresh maps and swaps them in, so cards of deleted users are gone.
+     */
+    private synchronized int reload() {
+        LongKeyMap<Recipient> freshByPhone = new LongKeyMap<>(Math.max(expectedUsers, size()));
+        Map<UUID, Long> freshKeyByUser = new HashMap<>();
+        int count = read((key, recipient) -> {
+            if (key != PhoneKeys.INVALID) {
+                link(freshByPhone, freshKeyByUser, key, recipient);
+            }
+        }, SELECT_USERS);
+        lock.writeLock().lock();
+        try {
+            byPhone = freshByPhone;
+            keyByUser = freshKeyByUser;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return count;
+    }
+
+    private int read(BiConsumer<Long, Recipient> sink, String sql, Object... args) {
+        int[] count = { 0 };
+        LocalDateTime[] newest = { syncedUpTo };
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            Timestamp updatedAt = rs.getTimestamp(5);
+            sink.accept(PhoneKeys.of(rs.getString(2)), toRecipient(rs));
+            if (updatedAt != null && (newest[0] == null || updatedAt.toLocalDateTime().isAfter(newest[0]))) {
+                newest[0] = updatedAt.toLocalDateTime();
+            }
+            count[0]++;
+        }, args);
+        syncedUpTo = newest[0] != null ? newest[0] : LocalDateTime.now();
+        return count[0];
+    }
+
+    // One round trip for the whole batch, however many numbers it holds
+    private Map<Long, Recipient> selectByPhoneNumbers(Collection<String> phoneNumbers) {
+        String[] normalized = phoneNumbers.stream()
+                .map(com.tunfin.identity.service.AuthService::normalizePhone)
+                .toArray(String[]::new);
+        Map<Long, Recipient> resolved = new HashMap<>();
+        jdbcTemplate.query(SELECT_USERS + " WHERE phone_number = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", normalized)),
+                (RowCallbackHandler) rs -> resolved.put(PhoneKeys.of(rs.getString(2)), toRecipient(rs)));
+        return resolved;
+    }
+
+    private void put(long key, Recipient recipient) {
+        if (key == PhoneKeys.INVALID) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            link(byPhone, keyByUser, key, recipient);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void evict(UUID userId) {
+        lock.writeLock().lock();
+        try {
+            Long key = keyByUser.remove(userId);
+            if (key != null && ownedBy(byPhone.get(key), userId)) {
+                byPhone.remove(key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // A number is only withdrawn while it still points at the user giving it up
+    private static void link(LongKeyMap<Recipient> byPhone, Map<UUID, Long> keyByUser, long key,
+            Recipient recipient) {
+        Long previousKey = keyByUser.put(recipient.userId(), key);
+        if (previousKey != null && previousKey != key && ownedBy(byPhone.get(previousKey), recipient.userId())) {
+            byPhone.remove(previousKey);
+        }
+        Recipient previousOwner = byPhone.get(key);
+        if (previousOwner != null && !previousOwner.userId().equals(recipient.userId())) {
+            keyByUser.remove(previousOwner.userId(), key);
+        }
+        byPhone.put(key, recipient);
+    }
+
+    private static boolean ownedBy(Recipient recipient, UUID userId) {
+        return recipient != null && recipient.userId().equals(userId);
+    }
+
+    private static Recipient toRecipient(ResultSet rs) throws SQLException {
+        String kycLevel = rs.getString(4);
+        return new Recipient(rs.getObject(1, UUID.class), rs.getString(3),
+                kycLevel == null ? KycLevel.UNVERIFIED : KycLevel.valueOf(kycLevel));
+    }
+
+    private static Recipient toRecipient(User user) {
+        return new Recipient(user.getId(), user.getFullName(), user.getKycLevel());
+    }
+}
@@ -0,0 +1,56 @@
+package com.tunfin.identity.directory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How many phone numbers each user may resolve per window, so contact sync cannot be used to
+ * walk the directory number range by number range. Counted per node, in fixed windows.
+ */
+@Component
+public class SearchQuota {
+
+    private record Usage(long window, long numbers) {
+    }
+
+    private final long maxNumbers;
+    private final long windowMs;
+    private final Map<String, Usage> usage = new ConcurrentHashMap<>();
+
+    public SearchQuota(@Value("${identity.directory.search-quota:20000}") long maxNumbers,
+            @Value("${identity.directory.search-quota-window-ms:3600000}") long windowMs) {
+        this.maxNumbers = maxNumbers;
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * Counts {@code numbers} lookups against the caller, refusing them if the window's quota
+     * would be exceeded.
+     */
+    public void consume(String caller, int numbers) {
+        long window = System.currentTimeMillis() / windowMs;
+        boolean[] allowed = { true };
+        usage.compute(caller, (key, used) -> {
+            long sofar = used == null || used.window() != window ? 0 : used.numbers();
+            if (sofar + numbers > maxNumbers) {
+                allowed[0] = false;
+                return new Usage(window, sofar);
+            }
+            return new Usage(window, sofar + numbers);
+        });
+        if (!allowed[0]) {
+            throw new RuntimeException("Too many requests, at most " + maxNumbers + " phone numbers per "
+                    + windowMs / 60_000 + " minutes");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${identity.directory.search-quota-window-ms:3600000}")
+    public void evictExpired() {
+        long window = System.currentTimeMillis() / windowMs;
+        usage.values().removeIf(used -> used.window() != window);
+    }
+}
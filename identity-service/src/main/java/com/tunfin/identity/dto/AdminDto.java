@@ -0,0 +1,43 @@
+package com.tunfin.identity.dto;
+
+import com.tunfin.identity.model.KycLevel;
+import com.tunfin.identity.model.Role;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public class AdminDto {
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class UserSummary {
+        private UUID id;
+        private String phoneNumber;
+        private String fullName;
+        private String email;
+        // What a KYC reviewer checks the documents against
+        private String nationalId;
+        private String address;
+        private LocalDate dateOfBirth;
+        private Role role;
+        private KycLevel kycLevel;
+        private LocalDateTime kycSubmittedAt;
+        private LocalDateTime createdAt;
+    }
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class UserPage {
+        private List<UserSummary> items;
+        private String nextCursor; // null on the last page
+    }
+}
@@ -43,6 +43,18 @@ public class AuthDto {
         private String password;
     }
 
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ChangePasswordRequest {
+        @jakarta.validation.constraints.NotBlank(message = "Current password is required")
+        private String currentPassword;
+
+        @jakarta.validation.constraints.NotBlank(message = "New password is required")
+        private String newPassword;
+    }
+
     @Data
     @Builder
     @AllArgsConstructor
@@ -0,0 +1,19 @@
+package com.tunfin.identity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+public class UserDto {
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class BatchSearchRequest {
+        @jakarta.validation.constraints.NotNull(message = "Phone numbers are required")
+        private List<String> phoneNumbers;
+    }
+}
@@ -73,6 +73,10 @@ public class GlobalExceptionHandler {
             return HttpStatus.CONFLICT;
         } else if (lowerMessage.contains("invalid") || lowerMessage.contains("bad credentials")) {
             return HttpStatus.UNAUTHORIZED;
+        } else if (lowerMessage.contains("too many requests")) {
+            return HttpStatus.TOO_MANY_REQUESTS;
+        } else if (lowerMessage.contains("try again later")) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
         }
         return HttpStatus.BAD_REQUEST;
     }
@@ -0,0 +1,21 @@
+package com.tunfin.identity.migration;
+
+import com.tunfin.common.migration.Migration;
+import com.tunfin.common.migration.MigrationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@Configuration
+public class MigrationConfiguration {
+
+    // Arbitrary, but the same on every node
+    private static final long LOCK_KEY = 0x1d3e7717_0000_0018L;
+
+    @Bean
+    public MigrationRunner migrationRunner(JdbcTemplate jdbcTemplate, List<Migration> migrations) {
+        return new MigrationRunner(jdbcTemplate, migrations, "identity_schema_migrations", LOCK_KEY);
+    }
+}
@@ -0,0 +1,80 @@
+package com.tunfin.identity.migration;
+
+import com.tunfin.common.migration.Migration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Rewrites phone numbers stored before registration normalized them, with the same rules as
+ * {@link com.tunfin.identity.service.AuthService#normalizePhone}. Users are walked in id
+ * order a chunk at a time, one UPDATE per chunk, so no transaction or lock covers the whole
+ * table.
+ */
+@Component
+@Slf4j
+public class NormalizePhoneNumbersMigration implements Migration {
+
+    private static final String SELECT_CHUNK = "SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?";
+
+    // DISTINCT ON keeps two numbers of one chunk that normalize alike from colliding; numbers
+    // whose normalized form is already taken are left for support to merge, as before
+    private static final String NORMALIZE_CHUNK = """
+            UPDATE users u SET phone_number = n.normalized, updated_at = now()
+            FROM (
+                SELECT DISTINCT ON (normalized) id, normalized
+                FROM (
+                    SELECT id, CASE WHEN length(digits) = 8 THEN '216' || digits ELSE digits END AS normalized
+                    FROM (SELECT id, phone_number, regexp_replace(phone_number, '[^0-9]', '', 'g') AS digits
+                          FROM users WHERE id = ANY(?)) d
+                    WHERE phone_number <> CASE WHEN length(digits) = 8 THEN '216' || digits ELSE digits END
+                ) c
+                WHERE normalized <> ''
+                ORDER BY normalized, id
+            ) n
+            WHERE u.id = n.id
+              AND NOT EXISTS (SELECT 1 FROM users o WHERE o.phone_number = n.normalized)""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int chunkSize;
+
+    public NormalizePhoneNumbersMigration(JdbcTemplate jdbcTemplate,
+            @Value("${identity.migration.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public String version() {
+        return "001";
+    }
+
+    @Override
+    public String description() {
+        return "Normalize phone numbers";
+    }
+
+    @Override
+    public void apply() {
+        UUID after = new UUID(0L, 0L);
+        int scanned = 0;
+        int normalized = 0;
+        List<UUID> chunk;
+        do {
+            chunk = jdbcTemplate.queryForList(SELECT_CHUNK, UUID.class, after, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            UUID[] ids = chunk.toArray(UUID[]::new);
+            normalized += jdbcTemplate.update(NORMALIZE_CHUNK,
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids)));
+            scanned += chunk.size();
+            after = chunk.get(chunk.size() - 1);
+        } while (chunk.size() == chunkSize);
+        log.info(">>> MIGRATION: Normalized {} of {} phone numbers", normalized, scanned);
+    }
+}
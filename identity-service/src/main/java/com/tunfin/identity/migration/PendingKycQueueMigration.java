@@ -0,0 +1,45 @@
+package com.tunfin.identity.migration;
+
+import com.tunfin.common.migration.Migration;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gives users that were pending before kyc_submitted_at existed a submission time, and
+ * creates the partial index the KYC review queue is read from, which JPA cannot declare.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PendingKycQueueMigration implements Migration {
+
+    private static final String BACKFILL_KYC_SUBMITTED_AT = """
+            UPDATE users SET kyc_submitted_at = COALESCE(updated_at, created_at, now())
+            WHERE kyc_level = 'PENDING_VERIFICATION' AND kyc_submitted_at IS NULL""";
+
+    // Partial: only the users awaiting review are indexed, however many users there are
+    private static final String CREATE_PENDING_KYC_INDEX = """
+            CREATE INDEX IF NOT EXISTS idx_users_pending_kyc ON users (kyc_submitted_at, id)
+            WHERE kyc_level = 'PENDING_VERIFICATION'""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public String version() {
+        return "002";
+    }
+
+    @Override
+    public String description() {
+        return "Index the pending KYC review queue";
+    }
+
+    @Override
+    public void apply() {
+        int rows = jdbcTemplate.update(BACKFILL_KYC_SUBMITTED_AT);
+        jdbcTemplate.execute(CREATE_PENDING_KYC_INDEX);
+        log.info(">>> MIGRATION: Backfilled KYC submission time for {} pending users", rows);
+    }
+}
@@ -0,0 +1,38 @@
+package com.tunfin.identity.migration;
+
+import com.tunfin.common.migration.Migration;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Users created with User.builder() were stored with is_active false, since the builder did
+ * not keep the field's default. Such rows cannot be told apart from users an admin disabled
+ * while that was the case, so all are activated; those users have to be disabled again.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReactivateUsersMigration implements Migration {
+
+    private static final String ACTIVATE_USERS = "UPDATE users SET is_active = true WHERE is_active IS NOT TRUE";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public String version() {
+        return "003";
+    }
+
+    @Override
+    public String description() {
+        return "Activate users stored inactive by the builder";
+    }
+
+    @Override
+    public void apply() {
+        int rows = jdbcTemplate.update(ACTIVATE_USERS);
+        log.info(">>> MIGRATION: Activated {} users", rows);
+    }
+}
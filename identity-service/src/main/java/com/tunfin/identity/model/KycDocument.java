@@ -39,6 +39,13 @@ public class KycDocument {
     @Column(name = "file_path", nullable = false)
     private String filePath; // Missing mandatory field for DB constraint
 
+    @Column(length = 64)
+    private String contentSha256; // Files are stored under this hash; null for older uploads
+
+    private Long sizeBytes;
+
+    private String contentType;
+
     @Enumerated(EnumType.STRING)
     @Builder.Default
     private KycStatus status = KycStatus.PENDING;
@@ -48,10 +48,19 @@ public class User {
     @Builder.Default
     private KycLevel kycLevel = KycLevel.UNVERIFIED;
 
+    // When the user last entered PENDING_VERIFICATION; orders the KYC review queue
+    private LocalDateTime kycSubmittedAt;
+
+    // Cleared by an admin to refuse logins; without the default, built users would start disabled
+    @Builder.Default
     private boolean isActive = true;
 
     private String fcmToken;
 
+    // Bumped to revoke every token issued so far; tokens carry the version they were issued at
+    @Builder.Default
+    private Integer tokenVersion = 0;
+
     @CreationTimestamp
     private LocalDateTime createdAt;
 
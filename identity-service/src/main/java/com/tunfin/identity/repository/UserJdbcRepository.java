@@ -0,0 +1,82 @@
+package com.tunfin.identity.repository;
+
+import com.tunfin.identity.dto.AdminDto;
+import com.tunfin.identity.model.KycLevel;
+import com.tunfin.identity.model.Role;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keyset-paged reads of user summaries for the admin screens. Only the listed columns are
+ * read, so password hashes and the rest of the entity never leave the database.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserJdbcRepository {
+
+    private static final String SELECT_SUMMARY = """
+            SELECT id, phone_number, full_name, email, role, kyc_level, kyc_submitted_at, created_at,
+                   national_id, address, date_of_birth
+            FROM users""";
+
+    private static final String USERS_PAGE = SELECT_SUMMARY + """
+
+            WHERE id > ?
+            ORDER BY id
+            LIMIT ?""";
+
+    // The literal predicate matches idx_users_pending_kyc, so the queue is read from the index
+    private static final String PENDING_KYC_PAGE = SELECT_SUMMARY + """
+
+            WHERE kyc_level = 'PENDING_VERIFICATION' AND (kyc_submitted_at, id) > (?, ?)
+            ORDER BY kyc_submitted_at, id
+            LIMIT ?""";
+
+    private static final RowMapper<AdminDto.UserSummary> SUMMARY_MAPPER = (rs, rowNum) -> {
+        String role = rs.getString(5);
+        String kycLevel = rs.getString(6);
+        return AdminDto.UserSummary.builder()
+                .id(rs.getObject(1, UUID.class))
+                .phoneNumber(rs.getString(2))
+                .fullName(rs.getString(3))
+                .email(rs.getString(4))
+                .role(role == null ? Role.USER : Role.valueOf(role))
+                .kycLevel(kycLevel == null ? KycLevel.UNVERIFIED : KycLevel.valueOf(kycLevel))
+                .kycSubmittedAt(toLocalDateTime(rs.getTimestamp(7)))
+                .createdAt(toLocalDateTime(rs.getTimestamp(8)))
+                .nationalId(rs.getString(9))
+                .address(rs.getString(10))
+                .dateOfBirth(rs.getObject(11, LocalDate.class))
+                .build();
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Up to {@code limit} users with an id after {@code afterId}, in id order.
+     */
+    public List<AdminDto.UserSummary> findPage(UUID afterId, int limit) {
+        return jdbcTemplate.query(USERS_PAGE, SUMMARY_MAPPER, afterId, limit);
+    }
+
+    /**
+     * Up to {@code limit} users awaiting KYC review that were submitted after the given
+     * position, oldest submission first.
+     */
+    public List<AdminDto.UserSummary> findPendingKycPage(LocalDateTime afterSubmittedAt, UUID afterId, int limit) {
+        return jdbcTemplate.query(PENDING_KYC_PAGE, SUMMARY_MAPPER,
+                Timestamp.valueOf(afterSubmittedAt), afterId, limit);
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
@@ -2,6 +2,11 @@ package com.tunfin.identity.repository;
 
 import com.tunfin.identity.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
 import java.util.Optional;
 import java.util.UUID;
 
@@ -9,4 +14,41 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByPhoneNumber(String phoneNumber);
 
     boolean existsByPhoneNumber(String phoneNumber);
+
+    // Rows created before token versions existed hold NULL, which counts as version 0
+    @Query("SELECT COALESCE(u.tokenVersion, 0) FROM User u WHERE u.id = :id")
+    Optional<Integer> findTokenVersionById(@Param("id") UUID id);
+
+    // Rehash-on-login only touches the hash, not the rest of the loaded row
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.passwordHash = :passwordHash WHERE u.id = :id")
+    int updatePasswordHash(@Param("id") UUID id, @Param("passwordHash") String passwordHash);
+
+    // Each of these moves the user's token version on, revoking every token issued so far
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.tokenVersion = COALESCE(u.tokenVersion, 0) + 1 WHERE u.id = :id")
+    int incrementTokenVersion(@Param("id") UUID id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.passwordHash = :passwordHash, u.tokenVersion = COALESCE(u.tokenVersion, 0) + 1 WHERE u.id = :id")
+    int changePassword(@Param("id") UUID id, @Param("passwordHash") String passwordHash);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.role = :role, u.tokenVersion = COALESCE(u.tokenVersion, 0) + 1 WHERE u.id = :id")
+    int changeRole(@Param("id") UUID id, @Param("role") com.tunfin.identity.model.Role role);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.isActive = :active, u.tokenVersion = COALESCE(u.tokenVersion, 0) + 1 WHERE u.id = :id")
+    int changeActive(@Param("id") UUID id, @Param("active") boolean active);
+
+    // Tokens FCM reports as unregistered; cleared in one statement per batch
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.fcmToken = NULL WHERE u.fcmToken IN :tokens")
+    int clearFcmTokens(@Param("tokens") java.util.Collection<String> tokens);
 }
@@ -1,11 +1,15 @@
 package com.tunfin.identity.security;
 
+import com.tunfin.common.security.JwtPrincipal;
+import com.tunfin.common.security.JwtVerifier;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -14,13 +18,25 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
 
 @Component
-@RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private final JwtUtil jwtService;
+    private final JwtVerifier jwtVerifier;
     private final UserDetailsService userDetailsService;
+    private final TokenVersionCache tokenVersionCache;
+    private final boolean claimsOnly;
+
+    public JwtAuthenticationFilter(JwtVerifier jwtVerifier, UserDetailsService userDetailsService,
+            TokenVersionCache tokenVersionCache,
+            @Value("${identity.auth.claims-only:true}") boolean claimsOnly) {
+        this.jwtVerifier = jwtVerifier;
+        this.userDetailsService = userDetailsService;
+        this.tokenVersionCache = tokenVersionCache;
+        this.claimsOnly = claimsOnly;
+    }
 
     @Override
     protected void doFilterInternal(
@@ -28,28 +44,51 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             HttpServletResponse response,
             FilterChain filterChain) throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
-        final String jwt;
-        final String userPhoneNumber;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        jwt = authHeader.substring(7);
-        userPhoneNumber = jwtService.extractUsername(jwt);
+        // Verified once: signature and expiry are checked here, everything else reads the principal
+        final JwtPrincipal principal = jwtVerifier.verify(authHeader.substring(7));
 
-        if (userPhoneNumber != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userPhoneNumber);
-            if (jwtService.isTokenValid(jwt, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities());
+        if (principal.subject() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UsernamePasswordAuthenticationToken authToken = claimsOnly
+                    ? fromClaims(principal)
+                    : fromUserDetails(principal);
+            if (authToken != null) {
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         }
         filterChain.doFilter(request, response);
     }
+
+    // Authorities come from the role claim; the only database read is the cached token version
+    private UsernamePasswordAuthenticationToken fromClaims(JwtPrincipal principal) {
+        if (principal.userId() == null
+                || !tokenVersionCache.isCurrent(UUID.fromString(principal.userId()), principal.tokenVersion())) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = principal.role() == null
+                ? List.of()
+                : List.of(new SimpleGrantedAuthority(principal.role()));
+        return new UsernamePasswordAuthenticationToken(principal, null, authorities);
+    }
+
+    private UsernamePasswordAuthenticationToken fromUserDetails(JwtPrincipal principal) {
+        if (principal.userId() != null
+                && !tokenVersionCache.isCurrent(UUID.fromString(principal.userId()), principal.tokenVersion())) {
+            return null;
+        }
+        UserDetails userDetails = this.userDetailsService.loadUserByUsername(principal.subject());
+        if (!principal.subject().equals(userDetails.getUsername())) {
+            return null;
+        }
+        return new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null,
+                userDetails.getAuthorities());
+    }
 }
@@ -0,0 +1,17 @@
+package com.tunfin.identity.security;
+
+import com.tunfin.common.security.JwtVerifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JwtConfiguration {
+
+    // Identity-service holds its own keys, so it verifies without fetching the JWKS it serves
+    @Bean
+    public JwtVerifier jwtVerifier(SigningKeys signingKeys,
+            @Value("${jwt.verify.cache-size:10000}") int cacheSize) {
+        return new JwtVerifier(signingKeys.keyResolver(), cacheSize);
+    }
+}
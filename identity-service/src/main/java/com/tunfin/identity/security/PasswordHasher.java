@@ -0,0 +1,101 @@
+package com.tunfin.identity.security;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs password hash comparisons on a fixed pool with a bounded queue, off the servlet
+ * threads. When the queue is full a login fails fast instead of tying up Tomcat, so a login
+ * storm cannot starve the rest of the API. A hash that was made with a lower work factor
+ * than the encoder's current one is recomputed on a successful match.
+ */
+@Component
+@Slf4j
+public class PasswordHasher {
+
+    /**
+     * Outcome of a check; {@code upgradedHash} is set when the stored hash should be replaced.
+     */
+    public record Verification(boolean matches, String upgradedHash) {
+    }
+
+    public record Stats(int queueDepth, int activeThreads, long verifications, long rehashes, long rejected,
+            double averageVerifyMillis) {
+    }
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    // Compared against for unknown users, so a miss takes as long as a wrong password
+    private final String dummyHash;
+
+    private final AtomicLong verifications = new AtomicLong();
+    private final AtomicLong rehashes = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong verifyNanos = new AtomicLong();
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+            @Value("${identity.password.hash-threads:0}") int threads,
+            @Value("${identity.password.queue-capacity:256}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, "password-hash-" + counter.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.dummyHash = passwordEncoder.encode("dummy-password-for-unknown-users");
+    }
+
+    /**
+     * Compares a password with a stored hash, or with a dummy hash when there is no user.
+     */
+    public CompletableFuture<Verification> verify(String rawPassword, String storedHash) {
+        try {
+            return CompletableFuture.supplyAsync(() -> check(rawPassword, storedHash), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            log.warn(">>> LOGIN: Password hash queue full ({} waiting), rejecting login", executor.getQueue().size());
+            return CompletableFuture.failedFuture(new RuntimeException("Login service busy, try again later"));
+        }
+    }
+
+    public Stats getStats() {
+        long total = verifications.get();
+        return new Stats(executor.getQueue().size(), executor.getActiveCount(), total, rehashes.get(),
+                rejected.get(), total == 0 ? 0 : verifyNanos.get() / 1_000_000.0 / total);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private Verification check(String rawPassword, String storedHash) {
+        long start = System.nanoTime();
+        try {
+            boolean matches = passwordEncoder.matches(rawPassword, storedHash != null ? storedHash : dummyHash);
+            if (!matches || storedHash == null) {
+                return new Verification(false, null);
+            }
+            if (!passwordEncoder.upgradeEncoding(storedHash)) {
+                return new Verification(true, null);
+            }
+            rehashes.incrementAndGet();
+            return new Verification(true, passwordEncoder.encode(rawPassword));
+        } finally {
+            verifications.incrementAndGet();
+            verifyNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.tunfin.identity.security;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -27,18 +29,32 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfiguration {
 
     private final JwtAuthenticationFilter jwtAuthFilter;
+    private final ServiceKeyFilter serviceKeyFilter;
     private final UserDetailsService userDetailsService;
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, AuthenticationProvider authenticationProvider)
+            throws Exception {
         http
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
-                .authorizeHttpRequests(auth -> auth.anyRequest().permitAll())
+                .authorizeHttpRequests(auth -> auth
+                        // Changes that revoke tokens act on the caller, or need an admin
+                        .requestMatchers(HttpMethod.POST, "/api/auth/password", "/api/auth/logout-all").authenticated()
+                        .requestMatchers(HttpMethod.PUT, "/api/admin/users/*/role", "/api/admin/users/*/active")
+                        .hasRole("ADMIN")
+                        // Contact sync is metered per user; profiles, FCM tokens and token versions
+                        // are for the other services
+                        .requestMatchers(HttpMethod.POST, "/api/users/search/batch").authenticated()
+                        .requestMatchers(HttpMethod.POST, "/api/users/batch", "/api/users/fcm-tokens/invalidate")
+                        .hasRole("SERVICE")
+                        .requestMatchers(HttpMethod.GET, "/api/users/*/token-version").hasRole("SERVICE")
+                        .anyRequest().permitAll())
                 .sessionManagement(sess -> sess
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-                .authenticationProvider(authenticationProvider())
-                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+                .authenticationProvider(authenticationProvider)
+                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(serviceKeyFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
@@ -49,6 +65,7 @@ public class SecurityConfiguration {
         configuration.setAllowedOrigins(Collections.singletonList("*")); // Allow all for dev
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "HEAD"));
         configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "Cache-Control"));
+        configuration.setExposedHeaders(Collections.singletonList("X-Next-Cursor"));
         configuration.setAllowCredentials(false);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
@@ -56,10 +73,10 @@ public class SecurityConfiguration {
     }
 
     @Bean
-    public AuthenticationProvider authenticationProvider() {
+    public AuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
         return authProvider;
     }
 
@@ -68,8 +85,9 @@ public class SecurityConfiguration {
         return config.getAuthenticationManager();
     }
 
+    // Raising the strength takes effect without downtime: older hashes are upgraded on the next login
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${identity.password.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 }
@@ -0,0 +1,62 @@
+package com.tunfin.identity.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Authenticates the other services on the endpoints only they call: a request carrying one
+ * of the configured keys in {@code X-Service-Key} gets {@code ROLE_SERVICE}. Without keys
+ * configured no request gets it, so those endpoints are closed.
+ */
+@Component
+public class ServiceKeyFilter extends OncePerRequestFilter {
+
+    static final String HEADER = "X-Service-Key";
+
+    private final List<byte[]> keys;
+
+    public ServiceKeyFilter(@Value("${identity.internal.service-keys:}") String keys) {
+        this.keys = Arrays.stream(keys.split(","))
+                .map(String::trim)
+                .filter(key -> !key.isEmpty())
+                .map(key -> key.getBytes(StandardCharsets.UTF_8))
+                .toList();
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        String presented = request.getHeader(HEADER);
+        if (presented != null && SecurityContextHolder.getContext().getAuthentication() == null
+                && matches(presented.getBytes(StandardCharsets.UTF_8))) {
+            SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                    "service", null, List.of(new SimpleGrantedAuthority("ROLE_SERVICE"))));
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    // Compared in constant time, so the key cannot be guessed byte by byte
+    private boolean matches(byte[] presented) {
+        boolean match = false;
+        for (byte[] key : keys) {
+            match |= MessageDigest.isEqual(key, presented);
+        }
+        return match;
+    }
+}
@@ -0,0 +1,163 @@
+package com.tunfin.identity.security;
+
+import com.tunfin.common.security.JwtKeyResolver;
+import com.tunfin.common.security.Jwks;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The keys tokens are signed and verified with. Tokens are signed with an ES256 key whose
+ * public half, together with any retired or upcoming keys, is published as a JWKS for the
+ * other services. Without a configured key pair an ephemeral one is generated, which is
+ * only fit for development: its tokens do not survive a restart.
+ */
+@Component
+@Slf4j
+public class SigningKeys {
+
+    private final SignatureAlgorithm algorithm;
+    private final String keyId;
+    private final PrivateKey privateKey;
+    private final Key hmacKey;
+    private final Instant hmacIssuedBefore;
+    private final Map<String, ECPublicKey> publicKeys;
+    private final String jwks;
+
+    public SigningKeys(@Value("${jwt.signing.algorithm:ES256}") String algorithm,
+            @Value("${jwt.secret:}") String secret,
+            @Value("${jwt.hs256.issued-before:}") String hmacIssuedBefore,
+            @Value("${jwt.signing.private-key:}") String privateKey,
+            @Value("${jwt.signing.public-key:}") String publicKey,
+            @Value("${jwt.signing.key-id:}") String keyId,
+            @Value("${jwt.signing.additional-public-keys:}") String additionalPublicKeys) {
+        this.algorithm = SignatureAlgorithm.forName(algorithm);
+        if (this.algorithm != SignatureAlgorithm.ES256 && this.algorithm != SignatureAlgorithm.HS256) {
+            throw new IllegalArgumentException("Unsupported jwt.signing.algorithm: " + algorithm);
+        }
+        this.hmacKey = secret.isBlank() ? null : Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        if (this.algorithm == SignatureAlgorithm.HS256 && hmacKey == null) {
+            throw new IllegalArgumentException("jwt.secret is required to sign with HS256");
+        }
+        // While HS256 is still signed here its tokens are current; once ES256 signs, only
+        // HS256 tokens from before the switch are honoured
+        if (this.algorithm == SignatureAlgorithm.HS256 || hmacKey == null) {
+            this.hmacIssuedBefore = null;
+        } else if (hmacIssuedBefore.isBlank()) {
+            throw new IllegalArgumentException("jwt.hs256.issued-before is required when jwt.secret is set");
+        } else {
+            this.hmacIssuedBefore = Instant.parse(hmacIssuedBefore);
+        }
+
+        KeyPair keyPair;
+        if (privateKey.isBlank()) {
+            keyPair = generateKeyPair();
+            log.warn(">>> JWT: No jwt.signing.private-key configured, signing with an ephemeral key");
+        } else {
+            keyPair = new KeyPair(decodePublicKey(publicKey), decodePrivateKey(privateKey));
+        }
+        this.privateKey = keyPair.getPrivate();
+        ECPublicKey signingPublicKey = (ECPublicKey) keyPair.getPublic();
+        this.keyId = keyId.isBlank() ? thumbprint(signingPublicKey) : keyId;
+
+        Map<String, ECPublicKey> keys = new LinkedHashMap<>();
+        keys.put(this.keyId, signingPublicKey);
+        // "kid=base64 X.509, kid=..." for keys that are retired but may still sign live tokens,
+        // or that will be used next and should reach the other services first
+        for (String entry : additionalPublicKeys.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid jwt.signing.additional-public-keys entry: " + entry);
+            }
+            keys.put(parts[0], decodePublicKey(parts[1]));
+        }
+        this.publicKeys = Collections.unmodifiableMap(keys);
+        this.jwks = Jwks.toJson(publicKeys);
+        log.info(">>> JWT: Signing with {} (kid {}), publishing key ids {}", this.algorithm, this.keyId, keys.keySet());
+    }
+
+    public SignatureAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+
+    public Key getSigningKey() {
+        return algorithm == SignatureAlgorithm.ES256 ? privateKey : hmacKey;
+    }
+
+    /**
+     * The published key set, as served at /.well-known/jwks.json.
+     */
+    public String getJwks() {
+        return jwks;
+    }
+
+    public JwtKeyResolver keyResolver() {
+        return new JwtKeyResolver(hmacKey, hmacIssuedBefore, publicKeys::get);
+    }
+
+    private static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static PrivateKey decodePrivateKey(String base64) {
+        try {
+            return KeyFactory.getInstance("EC")
+                    .generatePrivate(new PKCS8EncodedKeySpec(Base64.getMimeDecoder().decode(base64)));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid jwt.signing.private-key", e);
+        }
+    }
+
+    private static ECPublicKey decodePublicKey(String base64) {
+        try {
+            return (ECPublicKey) KeyFactory.getInstance("EC")
+                    .generatePublic(new X509EncodedKeySpec(Base64.getMimeDecoder().decode(base64)));
+        } catch (GeneralSecurityException | IllegalArgumentException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid EC public key", e);
+        }
+    }
+
+    // Stable id for a key, so every node holding the same key pair publishes the same kid
+    private static String thumbprint(ECPublicKey key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getEncoded());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 12));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.tunfin.identity.security;
+
+import com.tunfin.identity.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Current token version per user, read from the users table at most once per TTL. A token
+ * is revoked once the user's version has moved past the one it was issued with, so a
+ * revocation takes effect within one TTL without loading the user on every request.
+ */
+@Component
+public class TokenVersionCache {
+
+    private record Entry(int version, long loadedAtNanos) {
+    }
+
+    // Stands in for users that no longer exist, so their tokens are rejected until the TTL runs out
+    private static final int MISSING = Integer.MAX_VALUE;
+
+    private final UserRepository userRepository;
+    private final long ttlNanos;
+    private final Map<UUID, Entry> versions;
+
+    public TokenVersionCache(UserRepository userRepository,
+            @Value("${identity.auth.revocation-ttl-seconds:30}") long ttlSeconds,
+            @Value("${identity.auth.revocation-cache-size:100000}") int cacheSize) {
+        this.userRepository = userRepository;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.versions = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Whether a token issued at {@code tokenVersion} is still accepted for the user.
+     */
+    public boolean isCurrent(UUID userId, int tokenVersion) {
+        long now = System.nanoTime();
+        Entry entry = versions.get(userId);
+        if (entry == null || now - entry.loadedAtNanos() > ttlNanos) {
+            Optional<Integer> stored = userRepository.findTokenVersionById(userId);
+            entry = new Entry(stored.orElse(MISSING), now);
+            versions.put(userId, entry);
+        }
+        return tokenVersion >= entry.version();
+    }
+
+    /**
+     * Drops the cached version so the next request re-reads it.
+     */
+    public void evict(UUID userId) {
+        versions.remove(userId);
+    }
+}
@@ -0,0 +1,169 @@
+package com.tunfin.identity.service;
+
+import com.tunfin.identity.dto.AdminDto;
+import com.tunfin.identity.model.Role;
+import com.tunfin.identity.repository.UserJdbcRepository;
+import com.tunfin.identity.repository.UserRepository;
+import com.tunfin.identity.security.TokenVersionCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * User listings for the back office: every user in id order, and the KYC review queue in
+ * submission order. Pages are read by key rather than by offset, so page 10,000 costs the
+ * same as page 1; the streaming variants walk the same pages until the end. Role and
+ * account status changes revoke the user's tokens, so they apply on the next request.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AdminUserService {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final UserJdbcRepository userJdbcRepository;
+    private final UserRepository userRepository;
+    private final TokenVersionCache tokenVersionCache;
+
+    @Value("${identity.admin.page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${identity.admin.stream-batch-size:1000}")
+    private int streamBatchSize;
+
+    public AdminDto.UserPage getUsers(String cursor, Integer limit) {
+        if (cursor == null && limit == null) {
+            return everything(this::forEachUser);
+        }
+        int pageSize = pageSize(limit);
+        UUID after = UserCursor.decode(cursor).id();
+        return toPage(userJdbcRepository.findPage(after, pageSize + 1), pageSize, false);
+    }
+
+    public AdminDto.UserPage getPendingKycUsers(String cursor, Integer limit) {
+        if (cursor == null && limit == null) {
+            return everything(this::forEachPendingKycUser);
+        }
+        int pageSize = pageSize(limit);
+        UserCursor after = UserCursor.decode(cursor);
+        return toPage(userJdbcRepository.findPendingKycPage(after.submittedAt(), after.id(), pageSize + 1),
+                pageSize, true);
+    }
+
+    /**
+     * Hands every user to {@code sink}, one batch in memory at a time.
+     */
+    public void forEachUser(Consumer<AdminDto.UserSummary> sink) {
+        UUID after = UserCursor.START.id();
+        List<AdminDto.UserSummary> batch;
+        do {
+            batch = userJdbcRepository.findPage(after, streamBatchSize);
+            batch.forEach(sink);
+            if (!batch.isEmpty()) {
+                after = batch.get(batch.size() - 1).getId();
+            }
+        } while (batch.size() == streamBatchSize);
+    }
+
+    /**
+     * Hands every user awaiting KYC review to {@code sink}, oldest submission first.
+     */
+    public void forEachPendingKycUser(Consumer<AdminDto.UserSummary> sink) {
+        UserCursor after = UserCursor.START;
+        List<AdminDto.UserSummary> batch;
+        do {
+            batch = userJdbcRepository.findPendingKycPage(after.submittedAt(), after.id(), streamBatchSize);
+            batch.forEach(sink);
+            if (!batch.isEmpty()) {
+                AdminDto.UserSummary last = batch.get(batch.size() - 1);
+                after = new UserCursor(last.getKycSubmittedAt(), last.getId());
+            }
+        } while (batch.size() == streamBatchSize);
+    }
+
+    public void changeRole(UUID userId, Role role) {
+        if (userRepository.changeRole(userId, role) == 0) {
+            throw new RuntimeException("User not found");
+        }
+        tokenVersionCache.evict(userId);
+        log.info(">>> ADMIN: Role of user {} set to {}, tokens revoked", userId, role);
+    }
+
+    public void setActive(UUID userId, boolean active) {
+        if (userRepository.changeActive(userId, active) == 0) {
+            throw new RuntimeException("User not found");
+        }
+        tokenVersionCache.evict(userId);
+        log.info(">>> ADMIN: User {} {}, tokens revoked", userId, active ? "enabled" : "disabled");
+    }
+
+    // Callers that send neither a cursor nor a limit predate paging and still get every row
+    private static AdminDto.UserPage everything(Consumer<Consumer<AdminDto.UserSummary>> source) {
+        List<AdminDto.UserSummary> items = new ArrayList<>();
+        source.accept(items::add);
+        return AdminDto.UserPage.builder().items(items).build();
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    private static AdminDto.UserPage toPage(List<AdminDto.UserSummary> rows, int pageSize, boolean bySubmission) {
+        boolean hasMore = rows.size() > pageSize;
+        List<AdminDto.UserSummary> items = hasMore ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            AdminDto.UserSummary last = items.get(items.size() - 1);
+            nextCursor = new UserCursor(bySubmission ? last.getKycSubmittedAt() : null, last.getId()).encode();
+        }
+        return AdminDto.UserPage.builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // Position after the last row of a page; submittedAt is only used by the review queue
+    private record UserCursor(LocalDateTime submittedAt, UUID id) {
+
+        private static final UserCursor START = new UserCursor(LocalDateTime.of(1970, 1, 1, 0, 0), new UUID(0L, 0L));
+
+        static UserCursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return START;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                LocalDateTime submittedAt = separator > 0
+                        ? LocalDateTime.parse(raw.substring(0, separator))
+                        : START.submittedAt();
+                return new UserCursor(submittedAt, UUID.fromString(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                // Not "invalid": the exception handler reads that as a failed login
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+        }
+
+        String encode() {
+            String raw = (submittedAt != null ? submittedAt.toString() : "") + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -1,33 +1,47 @@
 package com.tunfin.identity.service;
 
+import com.tunfin.identity.directory.RecipientDirectory;
 import com.tunfin.identity.dto.AuthDto;
 import com.tunfin.identity.model.User;
 import com.tunfin.identity.repository.UserRepository;
 import com.tunfin.identity.security.JwtUtil;
+import com.tunfin.identity.security.PasswordHasher;
+import com.tunfin.identity.security.TokenVersionCache;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class AuthService {
 
         public static String normalizePhone(String phoneNumber) {
                 if (phoneNumber == null)
                         return null;
-                String digits = phoneNumber.replaceAll("\\D", "");
+                StringBuilder digits = new StringBuilder(phoneNumber.length() + 3);
+                for (int i = 0; i < phoneNumber.length(); i++) {
+                        char c = phoneNumber.charAt(i);
+                        if (c >= '0' && c <= '9') {
+                                digits.append(c);
+                        }
+                }
                 if (digits.length() == 8) {
-                        return "216" + digits;
+                        digits.insert(0, "216");
                 }
-                return digits;
+                return digits.toString();
         }
 
         private final UserRepository userRepository;
         private final PasswordEncoder passwordEncoder;
         private final JwtUtil jwtService;
-        private final AuthenticationManager authenticationManager;
+        private final PasswordHasher passwordHasher;
+        private final RecipientDirectory recipientDirectory;
+        private final TokenVersionCache tokenVersionCache;
 
         public AuthDto.AuthResponse register(AuthDto.RegisterRequest request) {
                 String phoneNumber = normalizePhone(request.getPhoneNumber());
@@ -52,29 +66,8 @@ public class AuthService {
                                 .build();
 
                 user = userRepository.save(user);
-
-                // Create authorities list based on Role
-                var authorities = java.util.Collections.singletonList(
-                                new org.springframework.security.core.authority.SimpleGrantedAuthority(
-                                                "ROLE_" + user.getRole().name()));
-
-                var userDetails = new org.springframework.security.core.userdetails.User(
-                                user.getPhoneNumber(),
-                                user.getPasswordHash(),
-                                authorities);
-
-                // Add Role to extraClaims
-                java.util.Map<String, Object> extraClaims = new java.util.HashMap<>();
-                extraClaims.put("userId", user.getId().toString());
-                extraClaims.put("role", "ROLE_" + user.getRole().name());
-
-                var jwtToken = jwtService.generateToken(extraClaims, userDetails);
-                return AuthDto.AuthResponse.builder()
-                                .token(jwtToken)
-                                .userId(user.getId().toString())
-                                .role("ROLE_" + user.getRole().name())
-                                .kycLevel(user.getKycLevel().name())
-                                .build();
+                recipientDirectory.update(user);
+                return issueToken(user);
         }
 
         private boolean isAdminBackdoor(AuthDto.RegisterRequest request) {
@@ -84,16 +77,64 @@ public class AuthService {
                                 (request.getAddress() != null && request.getAddress().toLowerCase().contains(check));
         }
 
-        public AuthDto.AuthResponse authenticate(AuthDto.AuthRequest request) {
+        /**
+         * Loads the user once and compares the password on the hashing pool, so the servlet
+         * thread is released while the hash runs.
+         */
+        public CompletableFuture<AuthDto.AuthResponse> authenticate(AuthDto.AuthRequest request) {
                 String phoneNumber = normalizePhone(request.getPhoneNumber());
-                authenticationManager.authenticate(
-                                new UsernamePasswordAuthenticationToken(
-                                                phoneNumber,
-                                                request.getPassword()));
+                User user = userRepository.findByPhoneNumber(phoneNumber).orElse(null);
+
+                // Unknown numbers are still hashed, so timing does not reveal who is registered
+                return passwordHasher.verify(request.getPassword(), user == null ? null : user.getPasswordHash())
+                                .thenApply(verification -> {
+                                        if (!verification.matches()) {
+                                                throw new BadCredentialsException("Bad credentials");
+                                        }
+                                        if (!user.isActive()) {
+                                                throw new RuntimeException("Account is disabled");
+                                        }
+                                        if (verification.upgradedHash() != null) {
+                                                userRepository.updatePasswordHash(user.getId(), verification.upgradedHash());
+                                                log.info(">>> LOGIN: Upgraded password hash for user {}", user.getId());
+                                        }
+                                        return issueToken(user);
+                                });
+        }
 
-                var user = userRepository.findByPhoneNumber(phoneNumber)
+        /**
+         * Replaces the password once the current one is confirmed. Every token issued before
+         * is revoked; the caller gets a fresh one.
+         */
+        public CompletableFuture<AuthDto.AuthResponse> changePassword(String phoneNumber,
+                        AuthDto.ChangePasswordRequest request) {
+                User user = userRepository.findByPhoneNumber(phoneNumber)
                                 .orElseThrow(() -> new RuntimeException("User not found"));
+                return passwordHasher.verify(request.getCurrentPassword(), user.getPasswordHash())
+                                .thenApply(verification -> {
+                                        if (!verification.matches()) {
+                                                throw new BadCredentialsException("Bad credentials");
+                                        }
+                                        userRepository.changePassword(user.getId(),
+                                                        passwordEncoder.encode(request.getNewPassword()));
+                                        tokenVersionCache.evict(user.getId());
+                                        log.info(">>> AUTH: Password changed for user {}, tokens revoked", user.getId());
+                                        return issueToken(userRepository.findById(user.getId()).orElseThrow());
+                                });
+        }
+
+        /**
+         * Signs the user out everywhere by revoking every token issued so far.
+         */
+        public void logoutAll(String phoneNumber) {
+                User user = userRepository.findByPhoneNumber(phoneNumber)
+                                .orElseThrow(() -> new RuntimeException("User not found"));
+                userRepository.incrementTokenVersion(user.getId());
+                tokenVersionCache.evict(user.getId());
+                log.info(">>> AUTH: Revoked all tokens for user {}", user.getId());
+        }
 
+        private AuthDto.AuthResponse issueToken(User user) {
                 // Create authorities list based on Role
                 var authorities = java.util.Collections.singletonList(
                                 new org.springframework.security.core.authority.SimpleGrantedAuthority(
@@ -108,6 +149,7 @@ public class AuthService {
                 java.util.Map<String, Object> extraClaims = new java.util.HashMap<>();
                 extraClaims.put("userId", user.getId().toString());
                 extraClaims.put("role", "ROLE_" + user.getRole().name());
+                extraClaims.put("ver", user.getTokenVersion() == null ? 0 : user.getTokenVersion());
 
                 var jwtToken = jwtService.generateToken(extraClaims, userDetails);
                 return AuthDto.AuthResponse.builder()
@@ -1,15 +1,17 @@
 package com.tunfin.identity.service;
 
+import com.tunfin.identity.directory.RecipientDirectory;
 import com.tunfin.identity.model.KycDocument;
 import com.tunfin.identity.model.KycLevel;
 import com.tunfin.identity.model.User;
 import com.tunfin.identity.repository.KycDocumentRepository;
 import com.tunfin.identity.repository.UserRepository;
+import com.tunfin.identity.storage.KycFileStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import okhttp3.*;
 import javax.crypto.Mac;
@@ -31,6 +33,9 @@ public class KycService {
 
     private final KycDocumentRepository kycDocumentRepository;
     private final UserRepository userRepository;
+    private final RecipientDirectory recipientDirectory;
+    private final KycFileStore kycFileStore;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${sumsub.app.token}")
     private String appToken;
@@ -99,54 +104,58 @@ public class KycService {
         }
     }
 
-    @Transactional
     public KycDocument uploadDocument(UUID userId, MultipartFile file, KycDocument.DocumentType type) {
-        log.info("Uploading KYC document for user: {}", userId);
-
-        try {
-            // Ensure upload directory exists
-            java.nio.file.Path uploadPath = java.nio.file.Paths.get("uploads", "kyc");
-            if (!java.nio.file.Files.exists(uploadPath)) {
-                java.nio.file.Files.createDirectories(uploadPath);
-            }
-
-            // Generate unique filename
-            String filename = userId + "_" + type + "_" + System.currentTimeMillis() + "_" + file.getOriginalFilename();
-            java.nio.file.Path filePath = uploadPath.resolve(filename);
+        try (java.io.InputStream content = file.getInputStream()) {
+            return uploadDocument(userId, content, file.getContentType(), file.getOriginalFilename(), type);
+        } catch (java.io.IOException e) {
+            log.error("Failed to read KYC upload: {}", e.getMessage());
+            throw new RuntimeException("Could not store the file. Error: " + e.getMessage());
+        }
+    }
 
-            // Save file
-            java.nio.file.Files.copy(file.getInputStream(), filePath,
-                    java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Stores a document streamed from {@code content}. The bytes are written and synced
+     * before any transaction opens, so a database connection is held for the two row
+     * writes only, however large the file or slow the client.
+     */
+    public KycDocument uploadDocument(UUID userId, java.io.InputStream content, String contentType,
+            String originalFilename, KycDocument.DocumentType type) {
+        log.info("Uploading KYC document for user: {}", userId);
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("User not found");
+        }
 
-            // URL that will be served by our controller
-            String fileUrl = "/api/kyc/view/" + filename;
+        KycFileStore.StoredFile stored = kycFileStore.store(content, contentType, originalFilename);
 
-            KycDocument document = KycDocument.builder()
+        KycDocument document = transactionTemplate.execute(status -> {
+            KycDocument saved = kycDocumentRepository.save(KycDocument.builder()
                     .userId(userId)
                     .type(type)
                     .documentType(type)
-                    .fileUrl(fileUrl)
-                    .filePath(filePath.toString())
+                    // URL that will be served by our controller
+                    .fileUrl("/api/kyc/view/" + stored.name())
+                    .filePath(stored.path().toString())
+                    .contentSha256(stored.sha256())
+                    .sizeBytes(stored.size())
+                    .contentType(contentType)
                     .status(KycDocument.KycStatus.PENDING)
-                    .build();
-
-            document = kycDocumentRepository.save(document);
+                    .build());
 
             // Update User Status
             User user = userRepository.findById(userId).orElseThrow();
             if (user.getKycLevel() == KycLevel.UNVERIFIED || user.getKycLevel() == KycLevel.REJECTED) {
                 user.setKycLevel(KycLevel.PENDING_VERIFICATION);
+                user.setKycSubmittedAt(LocalDateTime.now());
                 userRepository.save(user);
+                recipientDirectory.update(user);
             }
+            return saved;
+        });
 
-            // Trigger Async Analysis (Simulated)
-            triggerAiAnalysis(document);
+        // Trigger Async Analysis (Simulated)
+        triggerAiAnalysis(document);
 
-            return document;
-        } catch (java.io.IOException e) {
-            log.error("Failed to save KYC document: {}", e.getMessage());
-            throw new RuntimeException("Could not store the file. Error: " + e.getMessage());
-        }
+        return document;
     }
 
     private void triggerAiAnalysis(KycDocument document) {
@@ -192,6 +201,7 @@ public class KycService {
             User user = userRepository.findById(userId).orElseThrow();
             user.setKycLevel(KycLevel.VERIFIED);
             userRepository.save(user);
+            recipientDirectory.update(user);
             log.info("User {} is now VERIFIED", userId);
         }
     }
@@ -201,16 +211,11 @@ public class KycService {
     }
 
     // Admin Review
-    public List<User> getPendingUsers() {
-        return userRepository.findAll().stream()
-                .filter(u -> u.getKycLevel() == KycLevel.PENDING_VERIFICATION)
-                .toList();
-    }
-
     public void processManualReview(UUID userId, boolean approve) {
         User user = userRepository.findById(userId).orElseThrow();
         user.setKycLevel(approve ? KycLevel.VERIFIED : KycLevel.REJECTED);
         userRepository.save(user);
+        recipientDirectory.update(user);
 
         // Update documents
         List<KycDocument> docs = kycDocumentRepository.findByUserId(userId);
@@ -0,0 +1,235 @@
+package com.tunfin.identity.storage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves KYC document files with a strong ETag, conditional GETs and single byte ranges.
+ * Bodies go out through Tomcat's sendfile when the connector offers it, so the file is
+ * copied to the socket by the kernel, and through {@link FileChannel#transferTo} otherwise.
+ * Content-addressed files take their ETag from their name; legacy files are hashed once and
+ * the hash kept while their size and modification time are unchanged.
+ */
+@Component
+@Slf4j
+public class KycFileServer {
+
+    private record LegacyHash(long size, long modifiedMillis, String sha256) {
+    }
+
+    private record Range(long start, long end) {
+
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    // Request attributes of Tomcat's NIO connectors, the same ones its DefaultServlet uses
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final int LEGACY_HASH_CACHE_SIZE = 1024;
+
+    private final KycFileStore kycFileStore;
+    private final long sendfileThreshold;
+    private final Map<Path, LegacyHash> legacyHashes;
+
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong partial = new AtomicLong();
+    private final AtomicLong sendfile = new AtomicLong();
+
+    public KycFileServer(KycFileStore kycFileStore,
+            @Value("${identity.kyc.sendfile-threshold-bytes:49152}") long sendfileThreshold) {
+        this.kycFileStore = kycFileStore;
+        this.sendfileThreshold = sendfileThreshold;
+        this.legacyHashes = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, LegacyHash> eldest) {
+                return size() > LEGACY_HASH_CACHE_SIZE;
+            }
+        });
+    }
+
+    public void serve(String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path path = kycFileStore.resolve(name);
+        if (!Files.isRegularFile(path)) {
+            throw new RuntimeException("Document not found");
+        }
+        long size = Files.size(path);
+        String etag = "\"" + sha256(name, path) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // Identity documents: kept by the reviewer's browser only; never change under a name
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            notModified.incrementAndGet();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        Range range = new Range(0, size - 1);
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            Range requested = parseRange(rangeHeader, size);
+            if (requested == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (requested.length() < size) {
+                range = requested;
+                partial.incrementAndGet();
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + range.start() + "-" + range.end() + "/" + size);
+            }
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(name)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(range.length());
+        served.incrementAndGet();
+        if ("HEAD".equals(request.getMethod()) || range.length() == 0) {
+            return;
+        }
+
+        if (range.length() >= sendfileThreshold && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            sendfile.incrementAndGet();
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = range.start();
+            long remaining = range.length();
+            while (remaining > 0) {
+                long sent = file.transferTo(position, remaining, target);
+                position += sent;
+                remaining -= sent;
+            }
+            out.flush();
+        }
+    }
+
+    public long getServedCount() {
+        return served.get();
+    }
+
+    public long getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    public long getPartialCount() {
+        return partial.get();
+    }
+
+    public long getSendfileCount() {
+        return sendfile.get();
+    }
+
+    private String sha256(String name, Path path) throws IOException {
+        String hash = kycFileStore.contentHash(name);
+        if (hash != null) {
+            return hash;
+        }
+        long size = Files.size(path);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        LegacyHash cached = legacyHashes.get(path);
+        if (cached != null && cached.size() == size && cached.modifiedMillis() == modified) {
+            return cached.sha256();
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            hash = HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        legacyHashes.put(path, new LegacyHash(size, modified, hash));
+        return hash;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The one range in a {@code bytes=} header, clipped to the file; null when it cannot be
+     * satisfied. Several ranges, or a header that cannot be parsed, yield the whole file,
+     * which RFC 9110 allows in place of a multipart response.
+     */
+    private static Range parseRange(String header, long size) {
+        Range whole = new Range(0, size - 1);
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return whole;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return whole;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return null;
+                }
+                return new Range(Math.max(0, size - suffix), size - 1);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size || end < start) {
+                return null;
+            }
+            return new Range(start, end);
+        } catch (NumberFormatException e) {
+            return whole;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.tunfin.identity.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * KYC document files, named by the SHA-256 of their content so the same image uploaded twice
+ * is stored once. Uploads are streamed through a fixed buffer into a temporary file while
+ * the hash is computed, forced to disk, then renamed into place under a two-character shard
+ * directory. Renames are only durable once their directory is synced, and concurrent
+ * uploads share those directory syncs rather than each paying for one.
+ */
+@Component
+@Slf4j
+public class KycFileStore {
+
+    public record StoredFile(String name, String sha256, long size, Path path) {
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern CONTENT_NAME = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]{1,8})?");
+    private static final Pattern LEGACY_NAME = Pattern.compile("[A-Za-z0-9._ ()-]+");
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,8}");
+
+    private final Path root;
+    private final Path tmp;
+    private final long maxFileSize;
+
+    // Group commit of directory syncs: a ticket is taken after each rename, and one sync of
+    // every directory touched so far settles all tickets up to the generation it read
+    private final Set<Path> dirtyDirectories = ConcurrentHashMap.newKeySet();
+    private final AtomicLong generation = new AtomicLong();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private volatile long syncedGeneration;
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong directorySyncs = new AtomicLong();
+
+    public KycFileStore(@Value("${identity.kyc.storage-dir:uploads/kyc}") String storageDir,
+            @Value("${identity.kyc.max-file-size-bytes:10485760}") long maxFileSize) throws IOException {
+        this.root = Paths.get(storageDir).toAbsolutePath().normalize();
+        this.tmp = root.resolve(".tmp");
+        this.maxFileSize = maxFileSize;
+        Files.createDirectories(tmp);
+    }
+
+    /**
+     * Writes {@code content} to disk and returns once it is durable. Nothing is held in
+     * memory beyond one buffer, whatever the size of the file.
+     */
+    public StoredFile store(InputStream content, String contentType, String originalFilename) {
+        Path part = null;
+        try {
+            part = Files.createTempFile(tmp, "upload-", ".part");
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            long size = copy(content, part, sha256);
+            if (size == 0) {
+                throw new IllegalArgumentException("Document is empty");
+            }
+
+            String hash = HexFormat.of().formatHex(sha256.digest());
+            String name = hash + extension(contentType, originalFilename);
+            Path target = locate(name);
+            if (Files.exists(target)) {
+                deduplicated.incrementAndGet();
+                // The copy found may be another upload's, renamed but not yet synced
+                syncDirectories(generation.get());
+                log.debug(">>> KYC STORE: {} already stored, reusing it", name);
+                return new StoredFile(name, hash, size, target);
+            }
+
+            Path shard = target.getParent();
+            if (Files.notExists(shard)) {
+                Files.createDirectories(shard);
+                dirtyDirectories.add(root);
+            }
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+            part = null;
+            dirtyDirectories.add(shard);
+            syncDirectories(generation.incrementAndGet());
+            stored.incrementAndGet();
+            return new StoredFile(name, hash, size, target);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store the file. Error: " + e.getMessage(), e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            deleteQuietly(part);
+        }
+    }
+
+    /**
+     * The file behind a name handed out by {@link #store}, or one of the flat, upload-named
+     * files written before content addressing.
+     */
+    public Path resolve(String name) {
+        if (CONTENT_NAME.matcher(name).matches()) {
+            return locate(name);
+        }
+        if (LEGACY_NAME.matcher(name).matches() && !name.startsWith(".")) {
+            return root.resolve(name);
+        }
+        throw new RuntimeException("Document not found");
+    }
+
+    /**
+     * The SHA-256 a name handed out by {@link #store} was derived from, or null for a
+     * legacy name.
+     */
+    public String contentHash(String name) {
+        return CONTENT_NAME.matcher(name).matches() ? name.substring(0, 64) : null;
+    }
+
+    public long getStoredCount() {
+        return stored.get();
+    }
+
+    public long getDeduplicatedCount() {
+        return deduplicated.get();
+    }
+
+    public long getDirectorySyncCount() {
+        return directorySyncs.get();
+    }
+
+    private long copy(InputStream content, Path part, MessageDigest sha256) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                size += read;
+                if (size > maxFileSize) {
+                    throw new IllegalArgumentException("Document too large, at most " + maxFileSize + " bytes");
+                }
+                sha256.update(buffer, 0, read);
+                wrapped.clear().limit(read);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+            }
+            channel.force(false);
+        }
+        return size;
+    }
+
+    private void syncDirectories(long ticket) throws IOException {
+        syncLock.lock();
+        try {
+            if (syncedGeneration >= ticket) {
+                return; // another upload's sync already covered this rename
+            }
+            long upTo = generation.get();
+            for (Path directory : dirtyDirectories.toArray(Path[]::new)) {
+                dirtyDirectories.remove(directory);
+                try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                    channel.force(true);
+                }
+            }
+            directorySyncs.incrementAndGet();
+            syncedGeneration = upTo;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private Path locate(String name) {
+        return root.resolve(name.substring(0, 2)).resolve(name);
+    }
+
+    // Kept so the file is served with a sensible type; only a short alphanumeric suffix is trusted
+    private static String extension(String contentType, String originalFilename) {
+        if (contentType != null) {
+            switch (contentType.toLowerCase(Locale.ROOT)) {
+                case "image/jpeg", "image/jpg" -> {
+                    return ".jpg";
+                }
+                case "image/png" -> {
+                    return ".png";
+                }
+                case "image/webp" -> {
+                    return ".webp";
+                }
+                case "application/pdf" -> {
+                    return ".pdf";
+                }
+                default -> {
+                }
+            }
+        }
+        if (originalFilename != null) {
+            int dot = originalFilename.lastIndexOf('.');
+            String extension = originalFilename.substring(dot + 1).toLowerCase(Locale.ROOT);
+            if (dot >= 0 && EXTENSION.matcher(extension).matches()) {
+                return "." + extension;
+            }
+        }
+        return "";
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn(">>> KYC STORE: Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.tunfin.identity.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JPEG thumbnails of KYC images for the review queue, generated on first request and kept in
+ * an LRU bounded by total bytes. Only content-addressed documents are thumbnailed: their
+ * name is their hash, so a cached thumbnail can never go stale.
+ */
+@Component
+@Slf4j
+public class ThumbnailCache {
+
+    public record Thumbnail(byte[] jpeg, String etag) {
+    }
+
+    public static final int DEFAULT_WIDTH = 320;
+
+    // A handful of sizes keeps the cache from filling with one image at every width asked for
+    private static final Set<Integer> WIDTHS = Set.of(160, DEFAULT_WIDTH, 640);
+
+    private final KycFileStore kycFileStore;
+    private final long maxBytes;
+
+    // Guarded by this
+    private final LinkedHashMap<String, Thumbnail> thumbnails = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ThumbnailCache(KycFileStore kycFileStore,
+            @Value("${identity.kyc.thumbnail-cache-bytes:33554432}") long maxBytes) {
+        this.kycFileStore = kycFileStore;
+        this.maxBytes = maxBytes;
+    }
+
+    public Thumbnail get(String name, int width) {
+        if (!WIDTHS.contains(width)) {
+            throw new IllegalArgumentException("Thumbnail width must be one of " + WIDTHS);
+        }
+        String hash = kycFileStore.contentHash(name);
+        if (hash == null) {
+            throw new RuntimeException("Thumbnail not found");
+        }
+        String key = hash + "-" + width;
+        synchronized (this) {
+            Thumbnail cached = thumbnails.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        // Generated outside the lock; two reviewers opening the same image at once both scale it
+        misses.incrementAndGet();
+        Thumbnail thumbnail = new Thumbnail(render(kycFileStore.resolve(name), width), "\"" + key + "\"");
+        put(key, thumbnail);
+        return thumbnail;
+    }
+
+    public synchronized int size() {
+        return thumbnails.size();
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private synchronized void put(String key, Thumbnail thumbnail) {
+        if (thumbnail.jpeg().length > maxBytes) {
+            return;
+        }
+        Thumbnail previous = thumbnails.put(key, thumbnail);
+        if (previous != null) {
+            cachedBytes -= previous.jpeg().length;
+        }
+        cachedBytes += thumbnail.jpeg().length;
+        Iterator<Thumbnail> eldest = thumbnails.values().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            cachedBytes -= eldest.next().jpeg().length;
+            eldest.remove();
+        }
+    }
+
+    private static byte[] render(Path path, int width) {
+        if (!Files.isRegularFile(path)) {
+            throw new RuntimeException("Thumbnail not found");
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            BufferedImage source = ImageIO.read(in);
+            if (source == null) {
+                throw new IllegalArgumentException("Document is not an image that can be thumbnailed");
+            }
+            int targetWidth = Math.min(width, source.getWidth());
+            int targetHeight = Math.max(1, (int) ((long) source.getHeight() * targetWidth / source.getWidth()));
+
+            BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            ByteArrayOutputStream jpeg = new ByteArrayOutputStream(16 * 1024);
+            ImageIO.write(scaled, "jpg", jpeg);
+            return jpeg.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the document. Error: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.tunfin.payment.bulk;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tunfin.payment.dto.BulkPayoutDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Reads payout rows from an upload as it streams in: CSV with a
+ * {@code receiverAccountId,amount[,reference]} layout (the header line is optional), or
+ * JSON given as one array or as newline-delimited objects. A row that cannot be read is
+ * kept with its error, so it is reported against its row number instead of failing the
+ * whole file; a file that is not CSV or JSON at all is refused.
+ */
+@Component
+public class PayoutFileParser {
+
+    private static final int AMOUNT_SCALE = 2; // amounts are stored with two decimals throughout the ledger
+
+    private final ObjectMapper objectMapper;
+    private final int maxRows;
+
+    public PayoutFileParser(ObjectMapper objectMapper, @Value("${payment.bulk.max-rows:50000}") int maxRows) {
+        this.objectMapper = objectMapper;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Reads CSV when the content type or file name says so, JSON otherwise.
+     */
+    public List<BulkPayoutDto.Row> parse(InputStream in, String contentType, String fileName) {
+        boolean csv = (contentType != null && contentType.toLowerCase(Locale.ROOT).contains("csv"))
+                || (fileName != null && fileName.toLowerCase(Locale.ROOT).endsWith(".csv"));
+        try {
+            return csv ? parseCsv(in) : parseJson(in);
+        } catch (IOException | com.fasterxml.jackson.databind.RuntimeJsonMappingException e) {
+            throw new RuntimeException("Malformed payout file: " + e.getMessage());
+        }
+    }
+
+    private List<BulkPayoutDto.Row> parseCsv(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<BulkPayoutDto.Row> rows = new ArrayList<>();
+        int receiverColumn = 0;
+        int amountColumn = 1;
+        int referenceColumn = 2;
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = splitCsv(line);
+            if (first) {
+                first = false;
+                int receiver = indexOf(fields, "receiveraccountid");
+                if (receiver >= 0) {
+                    receiverColumn = receiver;
+                    amountColumn = indexOf(fields, "amount");
+                    referenceColumn = indexOf(fields, "reference");
+                    continue;
+                }
+            }
+            add(rows, field(fields, receiverColumn), field(fields, amountColumn), field(fields, referenceColumn));
+        }
+        return rows;
+    }
+
+    private List<BulkPayoutDto.Row> parseJson(InputStream in) throws IOException {
+        List<BulkPayoutDto.Row> rows = new ArrayList<>();
+        // Iterates the elements of a top-level array, or a sequence of top-level objects
+        try (MappingIterator<JsonNode> values = objectMapper.readerFor(JsonNode.class)
+                .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                .readValues(in)) {
+            while (values.hasNextValue()) {
+                JsonNode value = values.nextValue();
+                add(rows, text(value, "receiverAccountId"), text(value, "amount"), text(value, "reference"));
+            }
+        }
+        return rows;
+    }
+
+    private void add(List<BulkPayoutDto.Row> rows, String receiver, String amount, String reference) {
+        if (rows.size() >= maxRows) {
+            throw new RuntimeException("Too many payouts, at most " + maxRows + " per file");
+        }
+        BulkPayoutDto.Row row = BulkPayoutDto.Row.builder()
+                .rowNumber(rows.size() + 1)
+                .reference(reference)
+                .build();
+        try {
+            row.setReceiverAccountId(UUID.fromString(receiver));
+        } catch (RuntimeException e) {
+            row.setError("Malformed receiverAccountId");
+        }
+        try {
+            row.setAmount(new BigDecimal(amount));
+            if (row.getAmount().signum() <= 0 || row.getAmount().stripTrailingZeros().scale() > AMOUNT_SCALE) {
+                row.setError("Amount must be positive with at most " + AMOUNT_SCALE + " decimals");
+            }
+        } catch (RuntimeException e) {
+            row.setAmount(null);
+            row.setError("Malformed amount");
+        }
+        rows.add(row);
+    }
+
+    private static String text(JsonNode value, String field) {
+        JsonNode node = value.get(field);
+        return node == null || node.isNull() ? null : node.asText();
+    }
+
+    private static String field(List<String> fields, int column) {
+        if (column < 0 || column >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(column).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static int indexOf(List<String> header, String name) {
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Comma-separated fields; a field in double quotes may contain commas and "" for a quote
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
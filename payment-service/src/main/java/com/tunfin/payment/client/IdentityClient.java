@@ -3,12 +3,22 @@ package com.tunfin.payment.client;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-@FeignClient(name = "identity-service", url = "http://localhost:8081/api/users")
+@FeignClient(name = "identity-service", url = "http://localhost:8081/api/users",
+        configuration = IdentityClientConfiguration.class)
 public interface IdentityClient {
 
     @GetMapping("/{id}")
     Map<String, String> getUserById(@PathVariable UUID id);
+
+    @PostMapping("/batch")
+    List<Map<String, String>> getUsersByIds(@RequestBody List<UUID> ids);
+
+    @PostMapping("/fcm-tokens/invalidate")
+    void clearFcmTokens(@RequestBody List<String> tokens);
 }
@@ -0,0 +1,21 @@
+package com.tunfin.payment.client;
+
+import feign.RequestInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Identifies payment-service to identity-service, whose profile and FCM token endpoints only
+ * answer other services. Not a @Configuration, so it applies to {@link IdentityClient} alone.
+ */
+public class IdentityClientConfiguration {
+
+    @Bean
+    public RequestInterceptor serviceKeyInterceptor(@Value("${payment.identity.service-key:}") String serviceKey) {
+        return template -> {
+            if (!serviceKey.isBlank()) {
+                template.header("X-Service-Key", serviceKey);
+            }
+        };
+    }
+}
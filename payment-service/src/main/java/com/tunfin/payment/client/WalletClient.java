@@ -6,6 +6,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import java.util.List;
 import java.util.UUID;
 
 @FeignClient(name = "wallet-service", url = "http://localhost:8082/api/wallet")
@@ -16,4 +17,7 @@ public interface WalletClient {
 
     @GetMapping("/accounts/{id}")
     com.tunfin.payment.dto.WalletDto.Account getAccount(@PathVariable UUID id);
+
+    @PostMapping("/accounts/batch")
+    List<WalletDto.Account> getAccounts(@RequestBody List<UUID> ids);
 }
@@ -4,7 +4,11 @@ import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import com.google.firebase.messaging.FirebaseMessaging;
+import com.tunfin.payment.push.FirebasePushGateway;
+import com.tunfin.payment.push.LoggingPushGateway;
+import com.tunfin.payment.push.PushGateway;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
@@ -40,4 +44,11 @@ public class FirebaseConfig {
             return null;
         }
     }
+
+    // Without a service account, pushes are logged instead of sent
+    @Bean
+    public PushGateway pushGateway(ObjectProvider<FirebaseMessaging> firebaseMessaging) {
+        FirebaseMessaging messaging = firebaseMessaging.getIfAvailable();
+        return messaging != null ? new FirebasePushGateway(messaging) : new LoggingPushGateway();
+    }
 }
@@ -0,0 +1,91 @@
+package com.tunfin.payment.controller;
+
+import com.tunfin.payment.bulk.PayoutFileParser;
+import com.tunfin.payment.dto.BulkPayoutDto;
+import com.tunfin.payment.model.BulkPayoutItem;
+import com.tunfin.payment.service.BulkPayoutService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/payment/bulk")
+@RequiredArgsConstructor
+public class BulkPayoutController {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final BulkPayoutService bulkPayoutService;
+    private final PayoutFileParser payoutFileParser;
+
+    // A payroll file uploaded from a form. A retry carrying the same Idempotency-Key gets the
+    // payout the first attempt created instead of paying the file again.
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BulkPayoutDto.Summary> uploadFile(@RequestParam UUID sourceAccountId,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestParam("file") MultipartFile file) throws IOException {
+        var existing = bulkPayoutService.findSubmitted(sourceAccountId, idempotencyKey);
+        if (existing.isPresent()) {
+            return accepted(existing.get());
+        }
+        try (InputStream in = file.getInputStream()) {
+            return accepted(bulkPayoutService.submit(sourceAccountId, idempotencyKey,
+                    payoutFileParser.parse(in, file.getContentType(), file.getOriginalFilename())));
+        }
+    }
+
+    // The rows as the request body: CSV, a JSON array, or newline-delimited JSON, read as they arrive
+    @PostMapping(consumes = { "text/csv", MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+    public ResponseEntity<BulkPayoutDto.Summary> uploadStream(@RequestParam UUID sourceAccountId,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            jakarta.servlet.http.HttpServletRequest request) throws IOException {
+        var existing = bulkPayoutService.findSubmitted(sourceAccountId, idempotencyKey);
+        if (existing.isPresent()) {
+            return accepted(existing.get());
+        }
+        return accepted(bulkPayoutService.submit(sourceAccountId, idempotencyKey,
+                payoutFileParser.parse(request.getInputStream(), request.getContentType(), null)));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<BulkPayoutDto.Summary> getSummary(@PathVariable UUID id) {
+        return ResponseEntity.ok(bulkPayoutService.getSummary(id));
+    }
+
+    @GetMapping("/{id}/items")
+    public ResponseEntity<List<BulkPayoutDto.ItemResult>> getItems(@PathVariable UUID id,
+            @RequestParam(required = false) BulkPayoutItem.Status status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        BulkPayoutDto.ItemPage page = bulkPayoutService.getItems(id, status, cursor, limit);
+        // Body stays a plain array; the cursor for the next page travels in a header
+        var response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    // Rows are paid in the background; the summary and row results are polled at the Location
+    private static ResponseEntity<BulkPayoutDto.Summary> accepted(BulkPayoutDto.Summary summary) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/payment/bulk/" + summary.getId()))
+                .body(summary);
+    }
+}
@@ -1,10 +1,14 @@
 package com.tunfin.payment.controller;
 
+import com.tunfin.payment.mail.SmtpMailer;
 import com.tunfin.payment.model.Payment;
+import com.tunfin.payment.push.PushBatcher;
+import com.tunfin.payment.service.OutboxDispatcher;
 import com.tunfin.payment.service.PaymentService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -19,6 +23,9 @@ import java.util.UUID;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final OutboxDispatcher outboxDispatcher;
+    private final PushBatcher pushBatcher;
+    private final SmtpMailer smtpMailer;
 
     @PostMapping("/p2p")
     public ResponseEntity<Payment> transfer(@RequestBody TransferRequest request) {
@@ -29,6 +36,21 @@ public class PaymentController {
                         request.getAmount()));
     }
 
+    @GetMapping("/stats/notifications")
+    public ResponseEntity<OutboxDispatcher.Stats> getNotificationStats() {
+        return ResponseEntity.ok(outboxDispatcher.getStats());
+    }
+
+    @GetMapping("/stats/push")
+    public ResponseEntity<PushBatcher.Stats> getPushStats() {
+        return ResponseEntity.ok(pushBatcher.getStats());
+    }
+
+    @GetMapping("/stats/mail")
+    public ResponseEntity<SmtpMailer.Stats> getMailStats() {
+        return ResponseEntity.ok(smtpMailer.getStats());
+    }
+
     @Data
     public static class TransferRequest {
         private UUID senderAccountId;
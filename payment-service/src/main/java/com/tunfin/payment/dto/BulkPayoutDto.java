@@ -0,0 +1,66 @@
+package com.tunfin.payment.dto;
+
+import com.tunfin.payment.model.BulkPayout;
+import com.tunfin.payment.model.BulkPayoutItem;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public class BulkPayoutDto {
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Row {
+        private int rowNumber;
+        private UUID receiverAccountId;
+        private BigDecimal amount;
+        private String reference;
+        private String error; // set when the row could not be read; it is reported as FAILED
+    }
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Summary {
+        private UUID id;
+        private UUID sourceAccountId;
+        private BulkPayout.Status status;
+        private int totalRows;
+        private long pendingRows; // not yet settled, including rows being posted
+        private long succeededRows;
+        private long failedRows;
+        private BigDecimal succeededAmount;
+        private LocalDateTime createdAt;
+        private LocalDateTime completedAt;
+    }
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ItemResult {
+        private int rowNumber;
+        private UUID receiverAccountId;
+        private BigDecimal amount;
+        private String reference;
+        private BulkPayoutItem.Status status;
+        private String error;
+    }
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ItemPage {
+        private List<ItemResult> items;
+        private String nextCursor; // null on the last page
+    }
+}
@@ -0,0 +1,233 @@
+package com.tunfin.payment.mail;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends mail over a small pool of SMTP connections that stay open between messages, so the
+ * TCP, STARTTLS and AUTH handshakes are paid once per connection rather than once per email.
+ * Each connection has its own sender thread, which takes up to {@code batch-size} queued
+ * messages at a time and sends them back to back. A connection idle for
+ * {@code idle-timeout-ms} is closed; one that fails is dropped and reopened for the next
+ * message. The queue is bounded: when it is full, submitters wait up to
+ * {@code offer-timeout-ms} and are then turned away.
+ */
+@Component
+@Slf4j
+public class SmtpMailer {
+
+    public record Stats(int queueDepth, int openConnections, long connectionsOpened, long batches, long sent,
+            long failed, double averageBatchSize) {
+    }
+
+    private record Pending(MimeMessage message, CompletableFuture<Void> result) {
+    }
+
+    private final JavaMailSenderImpl mailSender;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final long idleTimeoutMs;
+    private final long offerTimeoutMs;
+    private final List<Thread> senders = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public SmtpMailer(JavaMailSenderImpl mailSender,
+            @Value("${payment.mail.connections:4}") int connections,
+            @Value("${payment.mail.queue-capacity:10000}") int queueCapacity,
+            @Value("${payment.mail.batch-size:50}") int batchSize,
+            @Value("${payment.mail.idle-timeout-ms:60000}") long idleTimeoutMs,
+            @Value("${payment.mail.offer-timeout-ms:200}") long offerTimeoutMs) {
+        this.mailSender = mailSender;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        for (int i = 1; i <= connections; i++) {
+            Thread sender = new Thread(this::run, "smtp-sender-" + i);
+            sender.setDaemon(true);
+            sender.start();
+            senders.add(sender);
+        }
+    }
+
+    public MimeMessage createMimeMessage() {
+        return mailSender.createMimeMessage();
+    }
+
+    /**
+     * Queues a message for the next free connection. The future completes once the server
+     * has accepted or refused it.
+     */
+    public CompletableFuture<Void> submit(MimeMessage message) {
+        Pending pending = new Pending(message, new CompletableFuture<>());
+        try {
+            if (!queue.offer(pending, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return CompletableFuture.failedFuture(new RuntimeException("Mail queue full, try again later"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        return pending.result();
+    }
+
+    public Stats getStats() {
+        long batchCount = batches.get();
+        return new Stats(queue.size(), openConnections.get(), connectionsOpened.get(), batchCount, sent.get(),
+                failed.get(), batchCount == 0 ? 0 : (double) (sent.get() + failed.get()) / batchCount);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        senders.forEach(Thread::interrupt);
+        for (Thread sender : senders) {
+            sender.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private void run() {
+        Connection connection = new Connection();
+        List<Pending> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                Pending first;
+                try {
+                    first = running ? queue.poll(idleTimeoutMs, TimeUnit.MILLISECONDS) : queue.poll();
+                } catch (InterruptedException e) {
+                    // Shutting down: send what is already queued, then stop
+                    running = false;
+                    continue;
+                }
+                if (first == null) {
+                    connection.close(); // idle: let the server end its session
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                send(connection, batch);
+                batch.clear();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void send(Connection connection, List<Pending> batch) {
+        batches.incrementAndGet();
+        connection.startBatch();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            Transport transport;
+            try {
+                transport = connection.transport();
+            } catch (MessagingException | RuntimeException e) {
+                // Server unreachable: fail the rest of the batch rather than reconnecting for each
+                log.warn(">>> EMAIL: Could not connect to SMTP server: {}", e.getMessage());
+                batch.subList(i, batch.size()).forEach(rest -> rest.result().completeExceptionally(e));
+                failed.addAndGet(batch.size() - i);
+                return;
+            }
+            MimeMessage message = pending.message();
+            try {
+                if (message.getSentDate() == null) {
+                    message.setSentDate(new Date());
+                }
+                message.saveChanges();
+                transport.sendMessage(message, message.getAllRecipients());
+                sent.incrementAndGet();
+                pending.result().complete(null);
+            } catch (SendFailedException e) {
+                // Refused recipients: the session itself is still usable
+                failed.incrementAndGet();
+                pending.result().completeExceptionally(e);
+            } catch (MessagingException | RuntimeException e) {
+                log.warn(">>> EMAIL: SMTP connection failed, reopening for the next message: {}", e.getMessage());
+                connection.close();
+                failed.incrementAndGet();
+                pending.result().completeExceptionally(e);
+            }
+        }
+        log.debug(">>> EMAIL: Sent batch of {}", batch.size());
+    }
+
+    // One sender thread's connection, opened on demand and checked with a NOOP before each batch
+    private final class Connection {
+
+        private Transport transport;
+        private boolean checked;
+
+        // The server may have timed the session out since the last batch
+        void startBatch() {
+            checked = false;
+        }
+
+        Transport transport() throws MessagingException {
+            if (transport != null && !checked && !transport.isConnected()) {
+                close();
+            }
+            if (transport == null) {
+                transport = open();
+            }
+            checked = true;
+            return transport;
+        }
+
+        void close() {
+            if (transport == null) {
+                return;
+            }
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug(">>> EMAIL: Closing SMTP connection failed: {}", e.getMessage());
+            }
+            transport = null;
+            openConnections.decrementAndGet();
+        }
+
+        // Same connection settings as JavaMailSenderImpl uses for its own sends
+        private Transport open() throws MessagingException {
+            String protocol = mailSender.getProtocol();
+            if (protocol == null) {
+                protocol = mailSender.getSession().getProperty("mail.transport.protocol");
+            }
+            String username = mailSender.getUsername();
+            String password = mailSender.getPassword();
+            if ("".equals(username)) {
+                username = null;
+                if ("".equals(password)) {
+                    password = null;
+                }
+            }
+            Transport opened = mailSender.getSession().getTransport(protocol != null ? protocol : "smtp");
+            opened.connect(mailSender.getHost(), mailSender.getPort(), username, password);
+            openConnections.incrementAndGet();
+            connectionsOpened.incrementAndGet();
+            return opened;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.tunfin.payment.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One uploaded payout file: a source account paying many recipients. Its rows are
+ * {@link BulkPayoutItem}s, posted to the ledger in the background. An upload retried with the
+ * same idempotency key finds the payout its first attempt created.
+ */
+@Entity
+@Table(name = "bulk_payouts", indexes = {
+        @Index(name = "idx_bulk_payouts_status", columnList = "status")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_bulk_payouts_idempotency_key", columnNames = { "sourceAccountId", "idempotencyKey" })
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPayout {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(nullable = false)
+    private UUID sourceAccountId;
+
+    // Chosen by the client, unique per source account; uploads without one are never matched
+    private String idempotencyKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    @Builder.Default
+    private Status status = Status.PROCESSING;
+
+    private int totalRows;
+
+    // Held by the node processing the payout; a lapsed lease lets another node resume it
+    private LocalDateTime leaseUntil;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    private LocalDateTime completedAt;
+
+    public enum Status {
+        PROCESSING,
+        COMPLETED
+    }
+}
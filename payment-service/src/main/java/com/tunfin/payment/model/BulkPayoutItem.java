@@ -0,0 +1,60 @@
+package com.tunfin.payment.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One row of a bulk payout file and its outcome. Rows are written and updated in JDBC
+ * batches by {@link com.tunfin.payment.repository.BulkPayoutJdbcRepository}; the entity
+ * describes the table.
+ */
+@Entity
+@Table(name = "bulk_payout_items", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_bulk_payout_items_row", columnNames = { "bulkPayoutId", "rowNumber" })
+}, indexes = {
+        @Index(name = "idx_bulk_payout_items_status", columnList = "bulkPayoutId, status")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPayoutItem {
+    @Id
+    private UUID id;
+
+    @Column(nullable = false)
+    private UUID bulkPayoutId;
+
+    @Column(nullable = false)
+    private int rowNumber; // 1-based position in the uploaded file
+
+    private UUID receiverAccountId; // null when the row could not be read
+
+    private BigDecimal amount;
+
+    private String reference; // the payer's own reference for the row, e.g. an employee number
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    private String error;
+
+    private String ledgerReference; // referenceId of the ledger transaction carrying the row
+
+    private LocalDateTime updatedAt;
+
+    public enum Status {
+        PENDING, // read and waiting for its checks
+        POSTING, // assigned to a ledger transaction that may or may not have committed
+        SUCCEEDED,
+        FAILED
+    }
+}
@@ -0,0 +1,71 @@
+package com.tunfin.payment.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A notification written in the same transaction as the payment it reports, and delivered
+ * afterwards by the outbox dispatcher.
+ */
+@Entity
+@Table(name = "notification_outbox", indexes = {
+        @Index(name = "idx_outbox_due", columnList = "channel, status, nextAttemptAt"),
+        @Index(name = "idx_outbox_purge", columnList = "status, createdAt")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Channel channel;
+
+    @Column(nullable = false)
+    private String recipient; // email address or FCM token
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload; // JSON object of the channel's template fields
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    @Builder.Default
+    private Status status = Status.PENDING;
+
+    @Builder.Default
+    private int attempts = 0;
+
+    // When a PENDING message is next due, or when an IN_FLIGHT claim lapses
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    private String lastError;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    private LocalDateTime sentAt;
+
+    public enum Channel {
+        EMAIL,
+        PUSH
+    }
+
+    public enum Status {
+        PENDING,
+        IN_FLIGHT,
+        SENT,
+        FAILED
+    }
+}
@@ -0,0 +1,63 @@
+package com.tunfin.payment.push;
+
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.Notification;
+import com.google.firebase.messaging.SendResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sends through FCM's {@code sendEach}: up to 500 messages per call, sent over one
+ * connection instead of one HTTP round trip per device.
+ */
+public class FirebasePushGateway implements PushGateway {
+
+    private final FirebaseMessaging firebaseMessaging;
+
+    public FirebasePushGateway(FirebaseMessaging firebaseMessaging) {
+        this.firebaseMessaging = firebaseMessaging;
+    }
+
+    @Override
+    public List<PushResult> sendEach(List<PushMessage> messages) {
+        List<Message> batch = new ArrayList<>(messages.size());
+        for (PushMessage message : messages) {
+            batch.add(Message.builder()
+                    .setToken(message.token())
+                    .setNotification(Notification.builder()
+                            .setTitle(message.title())
+                            .setBody(message.body())
+                            .build())
+                    .build());
+        }
+
+        BatchResponse response;
+        try {
+            response = firebaseMessaging.sendEach(batch);
+        } catch (FirebaseMessagingException e) {
+            return Collections.nCopies(messages.size(), PushResult.failed(e.getMessage()));
+        }
+        List<PushResult> results = new ArrayList<>(messages.size());
+        for (SendResponse sent : response.getResponses()) {
+            results.add(sent.isSuccessful() ? PushResult.sent() : toResult(sent.getException()));
+        }
+        return results;
+    }
+
+    private static PushResult toResult(FirebaseMessagingException e) {
+        MessagingErrorCode code = e.getMessagingErrorCode();
+        // UNREGISTERED: app uninstalled or token expired; SENDER_ID_MISMATCH: token of another
+        // project; INVALID_ARGUMENT: with payloads this plain, a malformed token
+        if (code == MessagingErrorCode.UNREGISTERED || code == MessagingErrorCode.SENDER_ID_MISMATCH
+                || code == MessagingErrorCode.INVALID_ARGUMENT) {
+            return PushResult.invalidToken(code + ": " + e.getMessage());
+        }
+        return PushResult.failed((code != null ? code + ": " : "") + e.getMessage());
+    }
+}
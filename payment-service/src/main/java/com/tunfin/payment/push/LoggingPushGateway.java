@@ -0,0 +1,23 @@
+package com.tunfin.payment.push;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stand-in for FCM when no service account is configured (MOCK mode), and for local tests:
+ * every message succeeds and each batch is logged once.
+ */
+@Slf4j
+public class LoggingPushGateway implements PushGateway {
+
+    @Override
+    public List<PushResult> sendEach(List<PushMessage> messages) {
+        log.info(">>> PUSH (MOCK): Batch of {} messages", messages.size());
+        if (log.isDebugEnabled()) {
+            messages.forEach(m -> log.debug(">>> PUSH (MOCK): To: {}, Title: {}, Body: {}", m.token(), m.title(), m.body()));
+        }
+        return Collections.nCopies(messages.size(), PushResult.sent());
+    }
+}
@@ -0,0 +1,180 @@
+package com.tunfin.payment.push;
+
+import com.tunfin.payment.client.IdentityClient;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces push notifications into {@link PushGateway#sendEach} batches. A batch goes out
+ * when it reaches {@code batch-size} messages or when its first message has waited
+ * {@code flush-window-ms}, whichever comes first, so bursts travel in a few large calls and
+ * a lone message waits no longer than the window. The queue is bounded: when it is full,
+ * submitters wait up to {@code offer-timeout-ms} and are then turned away. Tokens FCM
+ * reports as gone are cleared in identity-service.
+ */
+@Component
+@Slf4j
+public class PushBatcher {
+
+    public record Stats(int queueDepth, long submitted, long rejected, long batches, long sent, long invalidTokens,
+            long failed, double averageBatchSize) {
+    }
+
+    private record Pending(PushMessage message, CompletableFuture<PushResult> result) {
+    }
+
+    private final PushGateway pushGateway;
+    private final IdentityClient identityClient;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final long flushWindowNanos;
+    private final long offerTimeoutMs;
+    private final Thread flusher;
+    private final ExecutorService pruner = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean running = true;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong invalidTokens = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public PushBatcher(PushGateway pushGateway, IdentityClient identityClient,
+            @Value("${payment.push.queue-capacity:10000}") int queueCapacity,
+            @Value("${payment.push.batch-size:500}") int batchSize,
+            @Value("${payment.push.flush-window-ms:50}") long flushWindowMs,
+            @Value("${payment.push.offer-timeout-ms:200}") long offerTimeoutMs) {
+        this.pushGateway = pushGateway;
+        this.identityClient = identityClient;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.min(batchSize, PushGateway.MAX_BATCH_SIZE);
+        this.flushWindowNanos = TimeUnit.MILLISECONDS.toNanos(flushWindowMs);
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.flusher = new Thread(this::run, "push-batcher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queues a message for the next batch. The future completes once FCM has answered for it.
+     */
+    public CompletableFuture<PushResult> submit(PushMessage message) {
+        Pending pending = new Pending(message, new CompletableFuture<>());
+        try {
+            if (!queue.offer(pending, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                return CompletableFuture.failedFuture(new RuntimeException("Push queue full, try again later"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        submitted.incrementAndGet();
+        return pending.result();
+    }
+
+    public Stats getStats() {
+        long batchCount = batches.get();
+        long answered = sent.get() + invalidTokens.get() + failed.get();
+        return new Stats(queue.size(), submitted.get(), rejected.get(), batchCount, sent.get(), invalidTokens.get(),
+                failed.get(), batchCount == 0 ? 0 : (double) answered / batchCount);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+        pruner.shutdown();
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushWindowNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || wait <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Shutting down: send what was collected, then drain what is left without waiting
+                running = false;
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        List<PushMessage> messages = new ArrayList<>(batch.size());
+        batch.forEach(pending -> messages.add(pending.message()));
+
+        List<PushResult> results;
+        try {
+            results = pushGateway.sendEach(messages);
+        } catch (RuntimeException e) {
+            log.error(">>> PUSH: Batch of {} failed: {}", batch.size(), e.getMessage());
+            results = java.util.Collections.nCopies(batch.size(), PushResult.failed(e.getMessage()));
+        }
+        batches.incrementAndGet();
+
+        List<String> goneTokens = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PushResult result = results.get(i);
+            switch (result.status()) {
+                case SENT -> sent.incrementAndGet();
+                case INVALID_TOKEN -> {
+                    invalidTokens.incrementAndGet();
+                    goneTokens.add(messages.get(i).token());
+                }
+                case FAILED -> failed.incrementAndGet();
+            }
+            batch.get(i).result().complete(result);
+        }
+        log.debug(">>> PUSH: Sent batch of {} ({} invalid tokens)", batch.size(), goneTokens.size());
+        if (!goneTokens.isEmpty()) {
+            prune(goneTokens);
+        }
+    }
+
+    // Off the flusher thread, so identity-service being slow does not hold up the next batch
+    private void prune(List<String> tokens) {
+        pruner.execute(() -> {
+            try {
+                identityClient.clearFcmTokens(tokens);
+                log.info(">>> PUSH: Cleared {} invalid FCM tokens in identity-service", tokens.size());
+            } catch (RuntimeException e) {
+                log.warn(">>> PUSH: Could not clear {} invalid FCM tokens: {}", tokens.size(), e.getMessage());
+            }
+        });
+    }
+}
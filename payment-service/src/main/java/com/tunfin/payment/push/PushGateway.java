@@ -0,0 +1,14 @@
+package com.tunfin.payment.push;
+
+import java.util.List;
+
+/**
+ * Sends a batch of push notifications in one call. Implementations report per-message
+ * failures in the results, which are in the order of the messages, rather than throwing.
+ */
+public interface PushGateway {
+
+    int MAX_BATCH_SIZE = 500; // FCM's limit for sendEach
+
+    List<PushResult> sendEach(List<PushMessage> messages);
+}
@@ -0,0 +1,7 @@
+package com.tunfin.payment.push;
+
+/**
+ * One notification for one device.
+ */
+public record PushMessage(String token, String title, String body) {
+}
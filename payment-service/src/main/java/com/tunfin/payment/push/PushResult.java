@@ -0,0 +1,32 @@
+package com.tunfin.payment.push;
+
+/**
+ * Outcome of one {@link PushMessage}. {@code INVALID_TOKEN} is final: the device is gone and
+ * its token should be forgotten. {@code FAILED} may succeed when retried.
+ */
+public record PushResult(Status status, String error) {
+
+    public enum Status {
+        SENT,
+        INVALID_TOKEN,
+        FAILED
+    }
+
+    private static final PushResult SENT = new PushResult(Status.SENT, null);
+
+    public static PushResult sent() {
+        return SENT;
+    }
+
+    public static PushResult invalidToken(String error) {
+        return new PushResult(Status.INVALID_TOKEN, error);
+    }
+
+    public static PushResult failed(String error) {
+        return new PushResult(Status.FAILED, error);
+    }
+
+    public boolean isSent() {
+        return status == Status.SENT;
+    }
+}
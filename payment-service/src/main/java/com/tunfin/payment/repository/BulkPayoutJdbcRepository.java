@@ -0,0 +1,217 @@
+package com.tunfin.payment.repository;
+
+import com.tunfin.payment.dto.BulkPayoutDto;
+import com.tunfin.payment.model.BulkPayoutItem;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Batched JDBC access to bulk payout rows: a file's rows are inserted in one batch, and
+ * each ledger transaction's rows change status with one statement.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BulkPayoutJdbcRepository {
+
+    public record OpenItem(UUID id, int rowNumber, UUID receiverAccountId, BigDecimal amount,
+            BulkPayoutItem.Status status, String ledgerReference) {
+    }
+
+    public record StatusCount(long rows, BigDecimal amount) {
+    }
+
+    private static final String INSERT_ITEM = """
+            INSERT INTO bulk_payout_items
+                (id, bulk_payout_id, row_number, receiver_account_id, amount, reference, status, error, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, LOCALTIMESTAMP)""";
+
+    private static final String OPEN_ITEM_COLUMNS = "id, row_number, receiver_account_id, amount, status, ledger_reference";
+
+    private static final String FIND_OPEN = "SELECT " + OPEN_ITEM_COLUMNS + """
+
+            FROM bulk_payout_items
+            WHERE bulk_payout_id = ? AND status IN ('PENDING', 'POSTING')
+            ORDER BY row_number""";
+
+    private static final String MARK_FAILED = """
+            UPDATE bulk_payout_items SET status = 'FAILED', error = ?, updated_at = LOCALTIMESTAMP
+            WHERE id = ? AND status = 'PENDING'""";
+
+    private static final String MARK_POSTING = """
+            UPDATE bulk_payout_items SET status = 'POSTING', ledger_reference = ?, updated_at = LOCALTIMESTAMP
+            WHERE id = ANY(?) AND status = 'PENDING'""";
+
+    private static final String SETTLE_SUCCEEDED = """
+            UPDATE bulk_payout_items SET status = 'SUCCEEDED', updated_at = LOCALTIMESTAMP
+            WHERE bulk_payout_id = ? AND ledger_reference = ? AND status = 'POSTING'
+            RETURNING """ + OPEN_ITEM_COLUMNS;
+
+    private static final String SETTLE_FAILED = """
+            UPDATE bulk_payout_items SET status = 'FAILED', error = ?, updated_at = LOCALTIMESTAMP
+            WHERE bulk_payout_id = ? AND ledger_reference = ? AND status = 'POSTING'""";
+
+    private static final String INSERT_PAYMENT = """
+            INSERT INTO payments (id, sender_id, receiver_id, amount, status, created_at)
+            VALUES (?, ?, ?, ?, 'SUCCESS', LOCALTIMESTAMP)""";
+
+    private static final String COUNT_BY_STATUS = """
+            SELECT status, COUNT(*), COALESCE(SUM(amount), 0)
+            FROM bulk_payout_items
+            WHERE bulk_payout_id = ?
+            GROUP BY status""";
+
+    private static final String ITEMS_PAGE = """
+            SELECT row_number, receiver_account_id, amount, reference, status, error
+            FROM bulk_payout_items
+            WHERE bulk_payout_id = ? AND row_number > ? AND (CAST(? AS VARCHAR) IS NULL OR status = ?)
+            ORDER BY row_number
+            LIMIT ?""";
+
+    // A lease is taken only on a payout nobody holds, so two nodes never work on one file
+    private static final String CLAIM = """
+            UPDATE bulk_payouts SET lease_until = LOCALTIMESTAMP + ? * INTERVAL '1 second'
+            WHERE id = ? AND status = 'PROCESSING' AND (lease_until IS NULL OR lease_until < LOCALTIMESTAMP)""";
+
+    private static final String RENEW = """
+            UPDATE bulk_payouts SET lease_until = LOCALTIMESTAMP + ? * INTERVAL '1 second' WHERE id = ?""";
+
+    private static final String RELEASE = "UPDATE bulk_payouts SET lease_until = NULL WHERE id = ?";
+
+    private static final String COMPLETE_IF_SETTLED = """
+            UPDATE bulk_payouts SET status = 'COMPLETED', completed_at = LOCALTIMESTAMP, lease_until = NULL
+            WHERE id = ? AND status = 'PROCESSING' AND NOT EXISTS (
+                SELECT 1 FROM bulk_payout_items
+                WHERE bulk_payout_id = ? AND status IN ('PENDING', 'POSTING'))""";
+
+    private static final String FIND_RESUMABLE = """
+            SELECT id FROM bulk_payouts
+            WHERE status = 'PROCESSING' AND (lease_until IS NULL OR lease_until < LOCALTIMESTAMP)""";
+
+    private static final RowMapper<OpenItem> OPEN_ITEM_MAPPER = (rs, rowNum) -> new OpenItem(
+            rs.getObject(1, UUID.class),
+            rs.getInt(2),
+            rs.getObject(3, UUID.class),
+            rs.getBigDecimal(4),
+            BulkPayoutItem.Status.valueOf(rs.getString(5)),
+            rs.getString(6));
+
+    private static final RowMapper<BulkPayoutDto.ItemResult> ITEM_RESULT_MAPPER = (rs, rowNum) -> BulkPayoutDto.ItemResult
+            .builder()
+            .rowNumber(rs.getInt(1))
+            .receiverAccountId(rs.getObject(2, UUID.class))
+            .amount(rs.getBigDecimal(3))
+            .reference(rs.getString(4))
+            .status(BulkPayoutItem.Status.valueOf(rs.getString(5)))
+            .error(rs.getString(6))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Writes a file's rows; rows read with an error are stored as FAILED.
+     */
+    public void insertItems(UUID bulkPayoutId, List<BulkPayoutDto.Row> rows) {
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (BulkPayoutDto.Row row : rows) {
+            BulkPayoutItem.Status status = row.getError() == null
+                    ? BulkPayoutItem.Status.PENDING
+                    : BulkPayoutItem.Status.FAILED;
+            args.add(new Object[] { UUID.randomUUID(), bulkPayoutId, row.getRowNumber(), row.getReceiverAccountId(),
+                    row.getAmount(), row.getReference(), status.name(), row.getError() });
+        }
+        jdbcTemplate.batchUpdate(INSERT_ITEM, args);
+    }
+
+    public List<OpenItem> findOpenItems(UUID bulkPayoutId) {
+        return jdbcTemplate.query(FIND_OPEN, OPEN_ITEM_MAPPER, bulkPayoutId);
+    }
+
+    /**
+     * Fails pending rows that did not pass their checks, each with its own reason.
+     */
+    public void markFailed(Map<UUID, String> errorsByItemId) {
+        List<Object[]> args = new ArrayList<>(errorsByItemId.size());
+        errorsByItemId.forEach((id, error) -> args.add(new Object[] { error, id }));
+        jdbcTemplate.batchUpdate(MARK_FAILED, args);
+    }
+
+    public void markPosting(Collection<UUID> itemIds, String ledgerReference) {
+        UUID[] ids = itemIds.toArray(UUID[]::new);
+        jdbcTemplate.update(MARK_POSTING, ps -> {
+            ps.setString(1, ledgerReference);
+            ps.setArray(2, ps.getConnection().createArrayOf("uuid", ids));
+        });
+    }
+
+    /**
+     * Marks the rows of a committed ledger transaction SUCCEEDED and returns those that were
+     * still open, so a transaction settled twice reports its rows only once.
+     */
+    public List<OpenItem> settleSucceeded(UUID bulkPayoutId, String ledgerReference) {
+        return jdbcTemplate.query(SETTLE_SUCCEEDED, OPEN_ITEM_MAPPER, bulkPayoutId, ledgerReference);
+    }
+
+    public void settleFailed(UUID bulkPayoutId, String ledgerReference, String error) {
+        jdbcTemplate.update(SETTLE_FAILED, error, bulkPayoutId, ledgerReference);
+    }
+
+    public void insertPayments(UUID senderAccountId, List<OpenItem> items) {
+        List<Object[]> args = new ArrayList<>(items.size());
+        for (OpenItem item : items) {
+            args.add(new Object[] { UUID.randomUUID(), senderAccountId, item.receiverAccountId(), item.amount() });
+        }
+        jdbcTemplate.batchUpdate(INSERT_PAYMENT, args);
+    }
+
+    public Map<BulkPayoutItem.Status, StatusCount> countByStatus(UUID bulkPayoutId) {
+        Map<BulkPayoutItem.Status, StatusCount> counts = new EnumMap<>(BulkPayoutItem.Status.class);
+        jdbcTemplate.query(COUNT_BY_STATUS, (RowCallbackHandler) rs -> counts.put(
+                BulkPayoutItem.Status.valueOf(rs.getString(1)),
+                new StatusCount(rs.getLong(2), rs.getBigDecimal(3))), bulkPayoutId);
+        return counts;
+    }
+
+    /**
+     * Up to {@code limit} rows after {@code afterRow}, in file order, optionally of one status.
+     */
+    public List<BulkPayoutDto.ItemResult> findItemsPage(UUID bulkPayoutId, BulkPayoutItem.Status status,
+            int afterRow, int limit) {
+        String statusName = status != null ? status.name() : null;
+        return jdbcTemplate.query(ITEMS_PAGE, ITEM_RESULT_MAPPER, bulkPayoutId, afterRow, statusName, statusName,
+                limit);
+    }
+
+    public boolean claim(UUID bulkPayoutId, long leaseSeconds) {
+        return jdbcTemplate.update(CLAIM, leaseSeconds, bulkPayoutId) == 1;
+    }
+
+    public void renew(UUID bulkPayoutId, long leaseSeconds) {
+        jdbcTemplate.update(RENEW, leaseSeconds, bulkPayoutId);
+    }
+
+    public void release(UUID bulkPayoutId) {
+        jdbcTemplate.update(RELEASE, bulkPayoutId);
+    }
+
+    public boolean completeIfSettled(UUID bulkPayoutId) {
+        return jdbcTemplate.update(COMPLETE_IF_SETTLED, bulkPayoutId, bulkPayoutId) == 1;
+    }
+
+    /**
+     * Payouts still processing that no node holds, e.g. after a restart.
+     */
+    public List<UUID> findResumable() {
+        return jdbcTemplate.queryForList(FIND_RESUMABLE, UUID.class);
+    }
+}
@@ -0,0 +1,11 @@
+package com.tunfin.payment.repository;
+
+import com.tunfin.payment.model.BulkPayout;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface BulkPayoutRepository extends JpaRepository<BulkPayout, UUID> {
+
+    Optional<BulkPayout> findBySourceAccountIdAndIdempotencyKey(UUID sourceAccountId, String idempotencyKey);
+}
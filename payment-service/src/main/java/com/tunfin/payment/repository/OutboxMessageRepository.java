@@ -0,0 +1,10 @@
+package com.tunfin.payment.repository;
+
+import com.tunfin.payment.model.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.UUID;
+
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, UUID> {
+
+    long countByStatus(OutboxMessage.Status status);
+}
@@ -0,0 +1,431 @@
+package com.tunfin.payment.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tunfin.payment.client.WalletClient;
+import com.tunfin.payment.dto.BulkPayoutDto;
+import com.tunfin.payment.dto.WalletDto;
+import com.tunfin.payment.model.BulkPayout;
+import com.tunfin.payment.model.BulkPayoutItem;
+import com.tunfin.payment.repository.BulkPayoutJdbcRepository;
+import com.tunfin.payment.repository.BulkPayoutJdbcRepository.OpenItem;
+import com.tunfin.payment.repository.BulkPayoutRepository;
+import feign.FeignException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk payouts: one source account paying the rows of an uploaded file. The upload is
+ * stored and answered at once; the rows are then processed in the background. Recipients
+ * are checked with a few batched lookups, and the payments go to wallet-service as ledger
+ * transactions of up to {@code legs-per-transaction} rows each, debiting the source once per
+ * transaction. Each row records its own outcome.
+ *
+ * <p>Rows are assigned to a transaction before it is posted, under a referenceId derived
+ * from the payout, so a payout interrupted mid-post (node restart, wallet-service timeout)
+ * is resumed by posting the same transaction again, which the ledger answers from its
+ * idempotency cache rather than paying twice.
+ */
+@Service
+@Slf4j
+public class BulkPayoutService {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_IDEMPOTENCY_KEY = 255; // the column's length
+
+    private final BulkPayoutRepository bulkPayoutRepository;
+    private final BulkPayoutJdbcRepository bulkPayoutJdbcRepository;
+    private final PartyLookup partyLookup;
+    private final WalletClient walletClient;
+    private final NotificationOutbox notificationOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final ExecutorService workers;
+    // Payouts being processed on this node; the lease keeps other nodes off them
+    private final Set<UUID> running = ConcurrentHashMap.newKeySet();
+
+    @Value("${payment.bulk.legs-per-transaction:500}")
+    private int legsPerTransaction;
+
+    @Value("${payment.bulk.post-attempts:3}")
+    private int postAttempts;
+
+    @Value("${payment.bulk.retry-delay-ms:2000}")
+    private long retryDelayMs;
+
+    @Value("${payment.bulk.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${payment.bulk.page-size:100}")
+    private int defaultPageSize;
+
+    public BulkPayoutService(BulkPayoutRepository bulkPayoutRepository,
+            BulkPayoutJdbcRepository bulkPayoutJdbcRepository, PartyLookup partyLookup, WalletClient walletClient,
+            NotificationOutbox notificationOutbox, TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+            @Value("${payment.bulk.workers:2}") int workerCount) {
+        this.bulkPayoutRepository = bulkPayoutRepository;
+        this.bulkPayoutJdbcRepository = bulkPayoutJdbcRepository;
+        this.partyLookup = partyLookup;
+        this.walletClient = walletClient;
+        this.notificationOutbox = notificationOutbox;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount,
+                r -> new Thread(r, "bulk-payout-" + counter.incrementAndGet()));
+    }
+
+    /**
+     * The payout an earlier upload with this idempotency key created, if any.
+     */
+    public Optional<BulkPayoutDto.Summary> findSubmitted(UUID sourceAccountId, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return Optional.empty();
+        }
+        return bulkPayoutRepository.findBySourceAccountIdAndIdempotencyKey(sourceAccountId, idempotencyKey)
+                .map(this::toSummary);
+    }
+
+    /**
+     * Stores the rows of a payout file and starts paying them once stored. The source must
+     * be KYC verified; recipients are checked row by row in the background. With an
+     * idempotency key, a payout already stored under it is returned instead, including one
+     * stored by a concurrent retry.
+     */
+    public BulkPayoutDto.Summary submit(UUID sourceAccountId, String idempotencyKey, List<BulkPayoutDto.Row> rows) {
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY)) {
+            throw new RuntimeException("Idempotency-Key must be 1 to " + MAX_IDEMPOTENCY_KEY + " characters");
+        }
+        Optional<BulkPayoutDto.Summary> existing = findSubmitted(sourceAccountId, idempotencyKey);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        if (rows.isEmpty()) {
+            throw new RuntimeException("Payout file has no rows");
+        }
+        PartyLookup.Party source = partyLookup.resolveAll(List.of(sourceAccountId)).get(sourceAccountId);
+        if (source == null) {
+            throw new RuntimeException("Source account not found");
+        }
+        if (!source.isVerified()) {
+            log.error(">>> BULK Denied: Source {} is not VERIFIED. Current level: {}",
+                    source.fullName(), source.kycLevel());
+            throw new RuntimeException(
+                    "KYC Verification Required for bulk payouts. Please verify your identity first.");
+        }
+        for (BulkPayoutDto.Row row : rows) {
+            if (row.getError() == null && sourceAccountId.equals(row.getReceiverAccountId())) {
+                row.setError("Cannot pay the source account");
+            }
+        }
+
+        BulkPayout payout;
+        try {
+            payout = store(sourceAccountId, idempotencyKey, rows);
+        } catch (DataIntegrityViolationException e) {
+            // A retry of the same upload stored it first
+            return findSubmitted(sourceAccountId, idempotencyKey).orElseThrow(() -> e);
+        }
+        log.info(">>> BULK: Accepted payout {} of {} rows from {}", payout.getId(), rows.size(), source.fullName());
+        return toSummary(payout);
+    }
+
+    private BulkPayout store(UUID sourceAccountId, String idempotencyKey, List<BulkPayoutDto.Row> rows) {
+        return transactionTemplate.execute(status -> {
+            BulkPayout saved = bulkPayoutRepository.saveAndFlush(BulkPayout.builder()
+                    .sourceAccountId(sourceAccountId)
+                    .idempotencyKey(idempotencyKey)
+                    .totalRows(rows.size())
+                    .build());
+            bulkPayoutJdbcRepository.insertItems(saved.getId(), rows);
+            UUID id = saved.getId();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedule(id);
+                }
+            });
+            return saved;
+        });
+    }
+
+    public BulkPayoutDto.Summary getSummary(UUID id) {
+        return toSummary(bulkPayoutRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Bulk payout not found")));
+    }
+
+    /**
+     * Row results in file order, optionally of one status, a page at a time.
+     */
+    public BulkPayoutDto.ItemPage getItems(UUID id, BulkPayoutItem.Status status, String cursor, Integer limit) {
+        if (!bulkPayoutRepository.existsById(id)) {
+            throw new RuntimeException("Bulk payout not found");
+        }
+        int pageSize = pageSize(limit);
+        int afterRow = decodeCursor(cursor);
+        List<BulkPayoutDto.ItemResult> rows = bulkPayoutJdbcRepository.findItemsPage(id, status, afterRow,
+                pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        List<BulkPayoutDto.ItemResult> items = hasMore ? rows.subList(0, pageSize) : rows;
+        return BulkPayoutDto.ItemPage.builder()
+                .items(items)
+                .nextCursor(hasMore ? String.valueOf(items.get(items.size() - 1).getRowNumber()) : null)
+                .build();
+    }
+
+    // Payouts left unfinished by a node that stopped, or by wallet-service being unavailable
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${payment.bulk.resume-interval-ms:60000}")
+    public void resume() {
+        bulkPayoutJdbcRepository.findResumable().forEach(this::schedule);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
+
+    private void schedule(UUID id) {
+        if (!running.add(id)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    process(id);
+                } catch (RuntimeException e) {
+                    // Left to the resume pass once the lease lapses
+                    log.error(">>> BULK: Processing payout {} failed: {}", id, e.getMessage(), e);
+                } finally {
+                    running.remove(id);
+                }
+            });
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            running.remove(id); // shutting down
+        }
+    }
+
+    private void process(UUID id) {
+        if (!bulkPayoutJdbcRepository.claim(id, leaseSeconds)) {
+            return; // another node holds it
+        }
+        BulkPayout payout = bulkPayoutRepository.findById(id).orElseThrow();
+        List<OpenItem> open = bulkPayoutJdbcRepository.findOpenItems(id);
+
+        // 1. One batched lookup for the source and every recipient still to be paid
+        Set<UUID> accountIds = new LinkedHashSet<>();
+        accountIds.add(payout.getSourceAccountId());
+        open.forEach(item -> accountIds.add(item.receiverAccountId()));
+        Map<UUID, PartyLookup.Party> parties = partyLookup.resolveAll(accountIds);
+        PartyLookup.Party source = parties.get(payout.getSourceAccountId());
+
+        // 2. Transactions an earlier run assigned go out again unchanged
+        Map<String, List<OpenItem>> postings = new LinkedHashMap<>();
+        List<OpenItem> pending = new ArrayList<>();
+        for (OpenItem item : open) {
+            if (item.status() == BulkPayoutItem.Status.POSTING) {
+                postings.computeIfAbsent(item.ledgerReference(), ref -> new ArrayList<>()).add(item);
+            } else {
+                pending.add(item);
+            }
+        }
+
+        // 3. Check the remaining rows: KYC of the source and of each recipient
+        Map<UUID, String> rejected = new HashMap<>();
+        List<OpenItem> eligible = new ArrayList<>();
+        for (OpenItem item : pending) {
+            PartyLookup.Party receiver = parties.get(item.receiverAccountId());
+            if (source == null || !source.isVerified()) {
+                rejected.put(item.id(), "Source account is not KYC verified");
+            } else if (receiver == null) {
+                rejected.put(item.id(), "Account not found");
+            } else if (!receiver.isVerified()) {
+                rejected.put(item.id(), "Recipient is not KYC verified");
+            } else {
+                eligible.add(item);
+            }
+        }
+        if (!rejected.isEmpty()) {
+            bulkPayoutJdbcRepository.markFailed(rejected);
+        }
+
+        // 4. Post: earlier assignments first, then the checked rows in groups
+        for (var posting : postings.entrySet()) {
+            post(payout, source, parties, posting.getKey(), posting.getValue());
+        }
+        for (int from = 0; from < eligible.size(); from += legsPerTransaction) {
+            List<OpenItem> chunk = eligible.subList(from, Math.min(from + legsPerTransaction, eligible.size()));
+            String ledgerReference = "BULK-" + id + "-" + chunk.get(0).rowNumber();
+            bulkPayoutJdbcRepository.markPosting(chunk.stream().map(OpenItem::id).toList(), ledgerReference);
+            post(payout, source, parties, ledgerReference, chunk);
+        }
+
+        if (bulkPayoutJdbcRepository.completeIfSettled(id)) {
+            var counts = bulkPayoutJdbcRepository.countByStatus(id);
+            log.info(">>> BULK: Completed payout {}: {} succeeded, {} failed", id,
+                    rows(counts, BulkPayoutItem.Status.SUCCEEDED), rows(counts, BulkPayoutItem.Status.FAILED));
+        } else {
+            bulkPayoutJdbcRepository.release(id);
+        }
+    }
+
+    // One ledger transaction: the source is debited the total, each recipient credited their row
+    private void post(BulkPayout payout, PartyLookup.Party source, Map<UUID, PartyLookup.Party> parties,
+            String ledgerReference, List<OpenItem> items) {
+        bulkPayoutJdbcRepository.renew(payout.getId(), leaseSeconds);
+
+        BigDecimal total = items.stream().map(OpenItem::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        List<WalletDto.LedgerEntryRequest> entries = new ArrayList<>(items.size() + 1);
+        entries.add(new WalletDto.LedgerEntryRequest(payout.getSourceAccountId(), total)); // Debit
+        for (OpenItem item : items) {
+            entries.add(new WalletDto.LedgerEntryRequest(item.receiverAccountId(), item.amount().negate())); // Credit
+        }
+
+        var request = WalletDto.TransactionRequest.builder()
+                .referenceId(ledgerReference)
+                .type("BULK_PAYOUT")
+                .description("Bulk payout " + payout.getId() + ", rows " + items.get(0).rowNumber() + "-"
+                        + items.get(items.size() - 1).rowNumber())
+                .entries(entries)
+                .build();
+
+        for (int attempt = 1;; attempt++) {
+            try {
+                walletClient.recordTransaction(request);
+                break;
+            } catch (FeignException e) {
+                String error = ledgerError(e);
+                if (e.status() == 409) {
+                    break; // posted by an earlier attempt and still settling in the ledger
+                }
+                boolean retryable = e.status() < 0 || e.status() >= 500 || error.toLowerCase().contains("retry");
+                if (!retryable) {
+                    bulkPayoutJdbcRepository.settleFailed(payout.getId(), ledgerReference, error);
+                    log.warn(">>> BULK: Ledger refused {} ({} rows): {}", ledgerReference, items.size(), error);
+                    return;
+                }
+                if (attempt >= postAttempts) {
+                    // The rows stay assigned; the resume pass posts the same transaction again
+                    log.error(">>> BULK: Could not post {} after {} attempts: {}", ledgerReference, attempt, error);
+                    return;
+                }
+                sleep(retryDelayMs * attempt);
+            }
+        }
+        String sourceName = source != null ? source.fullName() : "TunFin";
+        transactionTemplate.executeWithoutResult(status -> {
+            List<OpenItem> settled = bulkPayoutJdbcRepository.settleSucceeded(payout.getId(), ledgerReference);
+            if (settled.isEmpty()) {
+                return;
+            }
+            bulkPayoutJdbcRepository.insertPayments(payout.getSourceAccountId(), settled);
+            for (OpenItem item : settled) {
+                PartyLookup.Party receiver = parties.get(item.receiverAccountId());
+                if (receiver == null) {
+                    continue;
+                }
+                notificationOutbox.enqueueTransferEmail(receiver.email(), receiver.fullName(), "RECEIVER",
+                        item.amount(), sourceName);
+                notificationOutbox.enqueuePush(receiver.fcmToken(), "Transfer Received",
+                        "You received " + item.amount() + " TND from " + sourceName);
+            }
+        });
+        log.info(">>> BULK: Posted {} ({} rows, {} TND)", ledgerReference, items.size(), total);
+    }
+
+    // wallet-service puts its reason in the body's "message" field
+    private String ledgerError(FeignException e) {
+        String body = e.contentUTF8();
+        if (body != null && !body.isBlank()) {
+            try {
+                JsonNode message = objectMapper.readTree(body.getBytes(StandardCharsets.UTF_8)).get("message");
+                if (message != null && !message.isNull()) {
+                    return message.asText();
+                }
+            } catch (java.io.IOException ignored) {
+                // not JSON; fall back to the exception message
+            }
+        }
+        return e.status() < 0 ? "Wallet service unavailable" : "Ledger error " + e.status();
+    }
+
+    private BulkPayoutDto.Summary toSummary(BulkPayout payout) {
+        var counts = bulkPayoutJdbcRepository.countByStatus(payout.getId());
+        var succeeded = counts.get(BulkPayoutItem.Status.SUCCEEDED);
+        return BulkPayoutDto.Summary.builder()
+                .id(payout.getId())
+                .sourceAccountId(payout.getSourceAccountId())
+                .status(payout.getStatus())
+                .totalRows(payout.getTotalRows())
+                .pendingRows(rows(counts, BulkPayoutItem.Status.PENDING) + rows(counts, BulkPayoutItem.Status.POSTING))
+                .succeededRows(rows(counts, BulkPayoutItem.Status.SUCCEEDED))
+                .failedRows(rows(counts, BulkPayoutItem.Status.FAILED))
+                .succeededAmount(succeeded != null ? succeeded.amount() : BigDecimal.ZERO)
+                .createdAt(payout.getCreatedAt())
+                .completedAt(payout.getCompletedAt())
+                .build();
+    }
+
+    private static long rows(Map<BulkPayoutItem.Status, BulkPayoutJdbcRepository.StatusCount> counts,
+            BulkPayoutItem.Status status) {
+        var count = counts.get(status);
+        return count != null ? count.rows() : 0;
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    // The cursor is the last row number of the previous page
+    private static int decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying a ledger posting", e);
+        }
+    }
+}
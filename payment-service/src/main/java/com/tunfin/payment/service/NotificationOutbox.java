@@ -0,0 +1,87 @@
+package com.tunfin.payment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tunfin.payment.model.OutboxMessage;
+import com.tunfin.payment.repository.OutboxMessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Queues notifications in the caller's transaction, so they are sent if and only if it
+ * commits. Delivery is left to {@link OutboxDispatcher}, which is woken once the
+ * transaction has committed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationOutbox {
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final OutboxDispatcher outboxDispatcher;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Queues the transfer email {@link EmailService#sendTransferNotification} sends; skipped
+     * for users without an address.
+     */
+    public void enqueueTransferEmail(String toEmail, String userName, String type, BigDecimal amount,
+            String otherPartyName) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("userName", userName);
+        fields.put("type", type);
+        fields.put("amount", amount.toPlainString());
+        fields.put("otherPartyName", otherPartyName);
+        enqueue(OutboxMessage.Channel.EMAIL, toEmail, fields);
+    }
+
+    /**
+     * Queues a push notification; skipped for users without an FCM token.
+     */
+    public void enqueuePush(String fcmToken, String title, String body) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("title", title);
+        fields.put("body", body);
+        enqueue(OutboxMessage.Channel.PUSH, fcmToken, fields);
+    }
+
+    private void enqueue(OutboxMessage.Channel channel, String recipient, Map<String, String> fields) {
+        if (recipient == null || recipient.isEmpty()) {
+            log.debug(">>> OUTBOX: No {} recipient, skipping notification", channel);
+            return;
+        }
+        outboxMessageRepository.save(OutboxMessage.builder()
+                .channel(channel)
+                .recipient(recipient)
+                .payload(toJson(fields))
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            outboxDispatcher.wakeUp();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxDispatcher.wakeUp();
+            }
+        });
+    }
+
+    private String toJson(Map<String, String> fields) {
+        try {
+            return objectMapper.writeValueAsString(fields);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Notification fields cannot be serialized", e);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.tunfin.payment.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tunfin.payment.model.OutboxMessage;
+import com.tunfin.payment.repository.OutboxMessageRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers the notification outbox. Each channel has its own worker pool and a cap on sends
+ * in flight, so a slow SMTP server cannot hold up push notifications; messages are passed on to
+ * the SMTP pool or the FCM batcher without holding a thread while they wait. Messages are claimed
+ * from the table only as far as a channel has free workers. A claim is a lease: a node that
+ * dies mid-send leaves its messages to be claimed again when the lease runs out, so delivery
+ * is at least once. Failed sends are retried with exponential backoff and jitter until
+ * {@code max-attempts}, then parked as FAILED; sends that cannot succeed, such as pushes to an
+ * unregistered device or mail to an address the server refuses, are parked at once. Delivered
+ * and parked messages are purged once they are past their retention.
+ */
+@Component
+@Slf4j
+public class OutboxDispatcher {
+
+    public record ChannelStats(int inFlight, long sent, long retried, long failed, double averageSendMillis) {
+    }
+
+    public record Stats(long pending, long failed, ChannelStats email, ChannelStats push) {
+    }
+
+    // SKIP LOCKED lets several nodes claim from the same table without waiting on each other
+    private static final String CLAIM = """
+            UPDATE notification_outbox
+            SET status = 'IN_FLIGHT', attempts = attempts + 1,
+                next_attempt_at = LOCALTIMESTAMP + ? * INTERVAL '1 second'
+            WHERE id IN (
+                SELECT id FROM notification_outbox
+                WHERE channel = ? AND status IN ('PENDING', 'IN_FLIGHT') AND next_attempt_at <= LOCALTIMESTAMP
+                ORDER BY next_attempt_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED)
+            RETURNING id, recipient, payload, attempts""";
+
+    private static final String MARK_SENT = """
+            UPDATE notification_outbox SET status = 'SENT', sent_at = LOCALTIMESTAMP, last_error = NULL
+            WHERE id = ?""";
+
+    private static final String MARK_RETRY = """
+            UPDATE notification_outbox
+            SET status = 'PENDING', next_attempt_at = LOCALTIMESTAMP + ? * INTERVAL '1 millisecond', last_error = ?
+            WHERE id = ?""";
+
+    private static final String MARK_FAILED = """
+            UPDATE notification_outbox SET status = 'FAILED', last_error = ?
+            WHERE id = ?""";
+
+    // In chunks, so the sweep never holds many rows locked; rows another node is purging are skipped
+    private static final String PURGE = """
+            DELETE FROM notification_outbox
+            WHERE id IN (
+                SELECT id FROM notification_outbox
+                WHERE (status = 'SENT' AND created_at < LOCALTIMESTAMP - ? * INTERVAL '1 hour')
+                   OR (status = 'FAILED' AND created_at < LOCALTIMESTAMP - ? * INTERVAL '1 hour')
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED)""";
+
+    private static final TypeReference<Map<String, String>> FIELDS = new TypeReference<>() {
+    };
+
+    private record Claimed(UUID id, String recipient, String payload, int attempts) {
+    }
+
+    // A failure that retrying cannot fix, such as a device token FCM no longer knows
+    private static final class PermanentFailure extends RuntimeException {
+        PermanentFailure(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Lane {
+        final OutboxMessage.Channel channel;
+        final Semaphore permits;
+        final ExecutorService workers;
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong retried = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong sendNanos = new AtomicLong();
+        final int concurrency;
+        // The last claim may have left due messages behind, so a freed worker should claim again
+        volatile boolean backlogged;
+
+        Lane(OutboxMessage.Channel channel, int concurrency, int threads) {
+            this.channel = channel;
+            this.concurrency = concurrency;
+            this.permits = new Semaphore(concurrency);
+            AtomicInteger counter = new AtomicInteger();
+            String prefix = "outbox-" + channel.name().toLowerCase() + "-";
+            this.workers = Executors.newFixedThreadPool(threads,
+                    r -> new Thread(r, prefix + counter.incrementAndGet()));
+        }
+
+        ChannelStats stats() {
+            long total = sent.get() + retried.get() + failed.get();
+            return new ChannelStats(concurrency - permits.availablePermits(), sent.get(), retried.get(),
+                    failed.get(), total == 0 ? 0 : sendNanos.get() / 1_000_000.0 / total);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final EmailService emailService;
+    private final NotificationService notificationService;
+    private final ObjectMapper objectMapper;
+
+    private final Map<OutboxMessage.Channel, Lane> lanes = new EnumMap<>(OutboxMessage.Channel.class);
+    private final ExecutorService poller = Executors.newSingleThreadExecutor(r -> new Thread(r, "outbox-poller"));
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    @Value("${payment.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${payment.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${payment.outbox.backoff-base-ms:1000}")
+    private long backoffBaseMs;
+
+    @Value("${payment.outbox.backoff-max-ms:300000}")
+    private long backoffMaxMs;
+
+    @Value("${payment.outbox.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${payment.outbox.sent-retention-hours:168}")
+    private long sentRetentionHours;
+
+    @Value("${payment.outbox.failed-retention-hours:720}")
+    private long failedRetentionHours;
+
+    @Value("${payment.outbox.purge-batch-size:1000}")
+    private int purgeBatchSize;
+
+    public OutboxDispatcher(JdbcTemplate jdbcTemplate, OutboxMessageRepository outboxMessageRepository,
+            EmailService emailService, NotificationService notificationService, ObjectMapper objectMapper,
+            @Value("${payment.outbox.email-concurrency:200}") int emailConcurrency,
+            @Value("${payment.outbox.email-threads:2}") int emailThreads,
+            @Value("${payment.outbox.push-concurrency:1000}") int pushConcurrency,
+            @Value("${payment.outbox.push-threads:4}") int pushThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.emailService = emailService;
+        this.notificationService = notificationService;
+        this.objectMapper = objectMapper;
+        // Sends are handed to the SMTP pool and the FCM batcher, so many can be in flight while
+        // a few threads record the outcomes
+        lanes.put(OutboxMessage.Channel.EMAIL,
+                new Lane(OutboxMessage.Channel.EMAIL, emailConcurrency, emailThreads));
+        lanes.put(OutboxMessage.Channel.PUSH,
+                new Lane(OutboxMessage.Channel.PUSH, pushConcurrency, pushThreads));
+    }
+
+    // Picks up retries that came due and anything another node queued
+    @Scheduled(fixedDelayString = "${payment.outbox.poll-interval-ms:1000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    @Scheduled(fixedDelayString = "${payment.outbox.purge-interval-ms:3600000}")
+    public void purge() {
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(PURGE, sentRetentionHours, failedRetentionHours, purgeBatchSize);
+            purged += deleted;
+        } while (deleted == purgeBatchSize);
+        if (purged > 0) {
+            log.info(">>> OUTBOX: Purged {} delivered or parked messages", purged);
+        }
+    }
+
+    /**
+     * Starts a drain unless one is already running.
+     */
+    public void wakeUp() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                poller.execute(this::drain);
+            } catch (java.util.concurrent.RejectedExecutionException e) {
+                draining.set(false); // shutting down
+            }
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(outboxMessageRepository.countByStatus(OutboxMessage.Status.PENDING),
+                outboxMessageRepository.countByStatus(OutboxMessage.Status.FAILED),
+                lanes.get(OutboxMessage.Channel.EMAIL).stats(),
+                lanes.get(OutboxMessage.Channel.PUSH).stats());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poller.shutdown();
+        lanes.values().forEach(lane -> lane.workers.shutdown());
+    }
+
+    private void drain() {
+        try {
+            boolean claimedAny;
+            do {
+                claimedAny = false;
+                for (Lane lane : lanes.values()) {
+                    claimedAny |= claimAndDispatch(lane);
+                }
+            } while (claimedAny);
+        } catch (RuntimeException e) {
+            log.error(">>> OUTBOX: Drain failed: {}", e.getMessage());
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    // Claims no more than the lane has free workers for, so nothing waits in memory
+    private boolean claimAndDispatch(Lane lane) {
+        int free = Math.min(batchSize, lane.permits.availablePermits());
+        if (free == 0) {
+            lane.backlogged = true;
+            return false;
+        }
+        List<Claimed> claimed = jdbcTemplate.query(CLAIM,
+                (rs, rowNum) -> new Claimed(rs.getObject(1, UUID.class), rs.getString(2), rs.getString(3), rs.getInt(4)),
+                leaseSeconds, lane.channel.name(), free);
+        lane.backlogged = claimed.size() == free;
+        for (Claimed message : claimed) {
+            lane.permits.acquireUninterruptibly();
+            long start = System.nanoTime();
+            send(lane, message).whenCompleteAsync((ignored, error) -> {
+                try {
+                    settle(lane, message, error);
+                } finally {
+                    lane.sendNanos.addAndGet(System.nanoTime() - start);
+                    lane.permits.release();
+                    if (lane.backlogged) {
+                        wakeUp();
+                    }
+                }
+            }, lane.workers);
+        }
+        return claimed.size() == free;
+    }
+
+    private CompletableFuture<Void> send(Lane lane, Claimed message) {
+        Map<String, String> fields;
+        BigDecimal amount;
+        try {
+            fields = objectMapper.readValue(message.payload(), FIELDS);
+            amount = lane.channel == OutboxMessage.Channel.EMAIL ? new BigDecimal(fields.get("amount")) : null;
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new PermanentFailure("Unreadable payload: " + e.getMessage()));
+        }
+        return switch (lane.channel) {
+            case EMAIL -> emailService.sendTransferNotification(message.recipient(), fields.get("userName"),
+                    fields.get("type"), amount, fields.get("otherPartyName"));
+            case PUSH -> notificationService.sendPushNotification(message.recipient(), fields.get("title"),
+                    fields.get("body")).thenAccept(result -> {
+                        switch (result.status()) {
+                            case SENT -> {
+                            }
+                            case INVALID_TOKEN -> throw new PermanentFailure(result.error());
+                            case FAILED -> throw new RuntimeException(result.error());
+                        }
+                    });
+        };
+    }
+
+    private void settle(Lane lane, Claimed message, Throwable error) {
+        if (error == null) {
+            jdbcTemplate.update(MARK_SENT, message.id());
+            lane.sent.incrementAndGet();
+            return;
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        String reason = truncate(cause.getClass().getSimpleName() + ": " + cause.getMessage());
+        if (isPermanent(cause) || message.attempts() >= maxAttempts) {
+            jdbcTemplate.update(MARK_FAILED, reason, message.id());
+            lane.failed.incrementAndGet();
+            log.error(">>> OUTBOX: Giving up on {} {} after {} attempts: {}", lane.channel, message.id(),
+                    message.attempts(), reason);
+        } else {
+            long delay = backoff(message.attempts());
+            jdbcTemplate.update(MARK_RETRY, delay, reason, message.id());
+            lane.retried.incrementAndGet();
+            log.warn(">>> OUTBOX: {} {} failed (attempt {}), retrying in {} ms: {}", lane.channel, message.id(),
+                    message.attempts(), delay, reason);
+        }
+    }
+
+    // Malformed addresses, and recipients the SMTP server rejected outright (5xx), get the same
+    // answer on every attempt; recipients it only deferred are left to the retries
+    private static boolean isPermanent(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof PermanentFailure || t instanceof AddressException) {
+                return true;
+            }
+            if (t instanceof SendFailedException sendFailed && sendFailed.getInvalidAddresses() != null
+                    && sendFailed.getInvalidAddresses().length > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Full jitter over the upper half, so messages that failed together do not retry together
+    private long backoff(int attempts) {
+        long ceiling = Math.min(backoffMaxMs, backoffBaseMs << Math.min(attempts - 1, 30));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= 255 ? error : error.substring(0, 255);
+    }
+}
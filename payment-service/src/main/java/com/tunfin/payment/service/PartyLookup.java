@@ -0,0 +1,164 @@
+package com.tunfin.payment.service;
+
+import com.tunfin.payment.client.IdentityClient;
+import com.tunfin.payment.client.WalletClient;
+import com.tunfin.payment.dto.WalletDto;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Who is behind a wallet account, for payments: the owning user from wallet-service and
+ * their profile from identity-service. Both sides of a transfer are looked up at once on
+ * virtual threads. An account never changes owner, so account owners are cached without
+ * expiry. Profiles are read fresh every time: their KYC level is what authorizes a payment,
+ * and a KYC rejection or downgrade has to stop the next transfer on every node.
+ */
+@Component
+@Slf4j
+public class PartyLookup {
+
+    public record Party(UUID accountId, UUID userId, String fullName, String kycLevel, String email,
+            String fcmToken) {
+
+        public boolean isVerified() {
+            return "VERIFIED".equals(kycLevel);
+        }
+    }
+
+    public record Parties(Party sender, Party receiver) {
+    }
+
+    private final WalletClient walletClient;
+    private final IdentityClient identityClient;
+    private final int batchSize;
+    private final Map<UUID, UUID> accountOwners;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public PartyLookup(WalletClient walletClient, IdentityClient identityClient,
+            @Value("${payment.lookup.cache-size:100000}") int cacheSize,
+            @Value("${payment.lookup.batch-size:500}") int batchSize) {
+        this.walletClient = walletClient;
+        this.identityClient = identityClient;
+        this.batchSize = batchSize;
+        this.accountOwners = lru(cacheSize);
+    }
+
+    /**
+     * Both parties of a transfer. The two lookups run concurrently, so a transfer waits for
+     * the slower of them rather than for all of their calls in turn.
+     */
+    public Parties resolve(UUID senderAccountId, UUID receiverAccountId) {
+        CompletableFuture<Party> sender = CompletableFuture.supplyAsync(() -> lookup(senderAccountId), executor);
+        CompletableFuture<Party> receiver = CompletableFuture.supplyAsync(() -> lookup(receiverAccountId), executor);
+        return new Parties(join(sender), join(receiver));
+    }
+
+    /**
+     * The parties behind many accounts, keyed by account id; accounts that do not exist are
+     * left out. Owners missing from the cache and all profiles are read in batches of
+     * {@code batch-size}, so a payroll file costs a few calls rather than two per row.
+     */
+    public Map<UUID, Party> resolveAll(Collection<UUID> accountIds) {
+        Map<UUID, UUID> owners = new HashMap<>();
+        List<UUID> unknown = new ArrayList<>();
+        for (UUID accountId : new LinkedHashSet<>(accountIds)) {
+            UUID userId = accountOwners.get(accountId);
+            if (userId != null) {
+                owners.put(accountId, userId);
+            } else {
+                unknown.add(accountId);
+            }
+        }
+        for (List<UUID> chunk : chunks(unknown)) {
+            for (WalletDto.Account account : walletClient.getAccounts(chunk)) {
+                UUID userId = UUID.fromString(account.getUserId());
+                accountOwners.put(account.getId(), userId);
+                owners.put(account.getId(), userId);
+            }
+        }
+
+        Map<UUID, Map<String, String>> profiles = new HashMap<>();
+        for (List<UUID> chunk : chunks(new ArrayList<>(new LinkedHashSet<>(owners.values())))) {
+            for (Map<String, String> user : identityClient.getUsersByIds(chunk)) {
+                profiles.put(UUID.fromString(user.get("userId")), user);
+            }
+        }
+
+        Map<UUID, Party> parties = new HashMap<>();
+        owners.forEach((accountId, userId) -> {
+            Map<String, String> user = profiles.get(userId);
+            if (user != null) {
+                parties.put(accountId, party(accountId, userId, user));
+            }
+        });
+        return parties;
+    }
+
+    public void evictAccount(UUID accountId) {
+        accountOwners.remove(accountId);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private Party lookup(UUID accountId) {
+        UUID userId = accountOwners.get(accountId);
+        if (userId == null) {
+            userId = UUID.fromString(walletClient.getAccount(accountId).getUserId());
+            accountOwners.put(accountId, userId);
+        }
+        return party(accountId, userId, identityClient.getUserById(userId));
+    }
+
+    private static Party party(UUID accountId, UUID userId, Map<String, String> user) {
+        return new Party(accountId, userId, user.get("fullName"), user.get("kycLevel"), user.get("email"),
+                user.get("fcmToken"));
+    }
+
+    // Rethrows what the lookup threw, so callers and the exception handler see the Feign error
+    private static Party join(CompletableFuture<Party> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private List<List<UUID>> chunks(List<UUID> ids) {
+        List<List<UUID>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            chunks.add(ids.subList(from, Math.min(from + batchSize, ids.size())));
+        }
+        return chunks;
+    }
+
+    private static Map<UUID, UUID> lru(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, UUID> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+}
@@ -6,6 +6,7 @@ import com.tunfin.payment.model.Payment;
 import com.tunfin.payment.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -18,40 +19,38 @@ public class PaymentService {
 
         private final PaymentRepository paymentRepository;
         private final WalletClient walletClient;
-        private final com.tunfin.payment.client.IdentityClient identityClient;
-        private final EmailService emailService;
-        private final NotificationService notificationService;
+        private final PartyLookup partyLookup;
+        private final NotificationOutbox notificationOutbox;
+        private final TransactionTemplate transactionTemplate;
 
         public Payment processP2PTransfer(UUID senderAccountId, UUID receiverAccountId, BigDecimal amount) {
-                // 1. Fetch Account Details to get User IDs
-                var senderAccount = walletClient.getAccount(senderAccountId);
-                var receiverAccount = walletClient.getAccount(receiverAccountId);
+                // 1. Resolve both parties (cached account owner, fresh profile) concurrently
+                var parties = partyLookup.resolve(senderAccountId, receiverAccountId);
 
-                // 2. Fetch User Details to get Emails and KYC status
-                var senderUser = identityClient.getUserById(UUID.fromString(senderAccount.getUserId()));
-                var receiverUser = identityClient.getUserById(UUID.fromString(receiverAccount.getUserId()));
+                // 2. Enforce KYC for Sender and Receiver
+                var sender = parties.sender();
+                var receiver = parties.receiver();
 
-                // 3. Enforce KYC for Sender and Receiver
-                if (!"VERIFIED".equals(senderUser.get("kycLevel"))) {
+                if (!sender.isVerified()) {
                         log.error(">>> P2P Denied: Sender {} is not VERIFIED. Current level: {}",
-                                        senderUser.get("fullName"), senderUser.get("kycLevel"));
+                                        sender.fullName(), sender.kycLevel());
                         throw new RuntimeException(
                                         "KYC Verification Required for P2P Transfers. Please verify your identity first.");
                 }
 
-                if (!"VERIFIED".equals(receiverUser.get("kycLevel"))) {
+                if (!receiver.isVerified()) {
                         log.error(">>> P2P Denied: Receiver {} is not VERIFIED. Current level: {}",
-                                        receiverUser.get("fullName"), receiverUser.get("kycLevel"));
+                                        receiver.fullName(), receiver.kycLevel());
                         throw new RuntimeException(
                                         "Recipient is not KYC verified. They must verify their identity to receive funds.");
                 }
 
-                // 4. Record Transaction in Wallet Service
+                // 3. Record Transaction in Wallet Service
                 var req = com.tunfin.payment.dto.WalletDto.TransactionRequest.builder()
                                 .referenceId(UUID.randomUUID().toString())
                                 .type("P2P_TRANSFER")
-                                .description("Transfer from " + senderUser.get("fullName") + " to "
-                                                + receiverUser.get("fullName"))
+                                .description("Transfer from " + sender.fullName() + " to "
+                                                + receiver.fullName())
                                 .entries(List.of(
                                                 new com.tunfin.payment.dto.WalletDto.LedgerEntryRequest(senderAccountId,
                                                                 amount), // Debit
@@ -62,46 +61,43 @@ public class PaymentService {
 
                 walletClient.recordTransaction(req);
 
-                // 4. Save Payment Record
-                var payment = Payment.builder()
-                                .senderId(senderAccountId)
-                                .receiverId(receiverAccountId)
-                                .amount(amount)
-                                .status("SUCCESS")
-                                .build();
-                payment = paymentRepository.save(payment);
-
-                // 5. Send Notifications
-                try {
-                        emailService.sendTransferNotification(
-                                        senderUser.get("email"),
-                                        senderUser.get("fullName"),
+                // 4. Save Payment Record and queue the notifications with it; they are delivered
+                // by the outbox dispatcher, so a slow SMTP server no longer holds up the response
+                return transactionTemplate.execute(status -> {
+                        var payment = paymentRepository.save(Payment.builder()
+                                        .senderId(senderAccountId)
+                                        .receiverId(receiverAccountId)
+                                        .amount(amount)
+                                        .status("SUCCESS")
+                                        .build());
+
+                        // 5. Queue Notifications
+                        notificationOutbox.enqueueTransferEmail(
+                                        sender.email(),
+                                        sender.fullName(),
                                         "SENDER",
                                         amount,
-                                        receiverUser.get("fullName"));
+                                        receiver.fullName());
 
-                        emailService.sendTransferNotification(
-                                        receiverUser.get("email"),
-                                        receiverUser.get("fullName"),
+                        notificationOutbox.enqueueTransferEmail(
+                                        receiver.email(),
+                                        receiver.fullName(),
                                         "RECEIVER",
                                         amount,
-                                        senderUser.get("fullName"));
+                                        sender.fullName());
 
                         // Push Notifications
-                        notificationService.sendPushNotification(
-                                        senderUser.get("fcmToken"),
+                        notificationOutbox.enqueuePush(
+                                        sender.fcmToken(),
                                         "Transfer Sent",
-                                        "You sent " + amount + " TND to " + receiverUser.get("fullName"));
+                                        "You sent " + amount + " TND to " + receiver.fullName());
 
-                        notificationService.sendPushNotification(
-                                        receiverUser.get("fcmToken"),
+                        notificationOutbox.enqueuePush(
+                                        receiver.fcmToken(),
                                         "Transfer Received",
-                                        "You received " + amount + " TND from " + senderUser.get("fullName"));
-                } catch (Exception e) {
-                        // Log but don't fail the transaction if email/push fails
-                        System.err.println(">>> FAILED to send notifications: " + e.getMessage());
-                }
+                                        "You received " + amount + " TND from " + sender.fullName());
 
-                return payment;
+                        return payment;
+                });
         }
 }
@@ -19,6 +19,7 @@ public class QrDto {
         private UUID merchantId;
         private String merchantName;
         private String currency;
+        private String format; // Optional: PNG (default) or SVG
     }
 
     @Data
@@ -32,6 +33,7 @@ public class QrDto {
         private String currency;
         private Integer expiryMinutes; // Optional, defaults to 15
         private String description;
+        private String format; // Optional: PNG (default) or SVG
     }
 
     @Data
@@ -42,7 +44,8 @@ public class QrDto {
         private UUID qrCodeId;
         private String qrType;
         private String qrDataString; // The actual QR code data
-        private byte[] qrImageBytes; // Base64 encoded PNG image
+        private byte[] qrImageBytes; // Base64 encoded image, see imageFormat
+        private String imageFormat; // PNG or SVG
         private BigDecimal amount;
         private String currency;
         private LocalDateTime expiresAt;
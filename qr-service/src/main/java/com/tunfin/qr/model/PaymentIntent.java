@@ -12,7 +12,9 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "payment_intents")
+@Table(name = "payment_intents", indexes = {
+        @Index(name = "idx_payment_intents_status_expiry", columnList = "status, expires_at")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -48,8 +50,11 @@ public class PaymentIntent {
 
     private LocalDateTime completedAt;
 
+    private LocalDateTime expiresAt; // PENDING intents are expired by QrExpirySweeper after this
+
     public enum PaymentStatus {
         PENDING,
+        PROCESSING, // claimed for execution; the transfer may have been made
         COMPLETED,
         FAILED,
         CANCELLED,
@@ -6,21 +6,25 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "qr_codes")
+@Table(name = "qr_codes", indexes = {
+        @Index(name = "idx_qr_codes_status_expiry", columnList = "status, expires_at")
+})
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class QrCode {
+public class QrCode implements Persistable<UUID> {
+    // Assigned before insert so a signed payload can embed it
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
-    private UUID id;
+    @Builder.Default
+    private UUID id = UUID.randomUUID();
 
     @Column(nullable = false)
     private UUID merchantId;
@@ -46,6 +50,12 @@ public class QrCode {
     @CreationTimestamp
     private LocalDateTime createdAt;
 
+    // New until Hibernate stamps createdAt, so save() persists instead of merging
+    @Override
+    public boolean isNew() {
+        return createdAt == null;
+    }
+
     public enum QrType {
         STATIC,   // Merchant identification only
         DYNAMIC   // Includes amount and expiry
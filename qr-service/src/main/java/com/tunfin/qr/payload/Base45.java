@@ -0,0 +1,73 @@
+package com.tunfin.qr.payload;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Base45 (RFC 9285). Its alphabet is the QR alphanumeric set, so encoded payloads use the
+ * denser alphanumeric mode instead of byte mode.
+ */
+public final class Base45 {
+
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+    private static final int[] VALUES = new int[128];
+
+    static {
+        java.util.Arrays.fill(VALUES, -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            VALUES[ALPHABET.charAt(i)] = i;
+        }
+    }
+
+    private Base45() {
+    }
+
+    public static String encode(byte[] data) {
+        StringBuilder out = new StringBuilder((data.length + 1) / 2 * 3);
+        int i = 0;
+        for (; i + 1 < data.length; i += 2) {
+            int n = ((data[i] & 0xff) << 8) | (data[i + 1] & 0xff);
+            out.append(ALPHABET.charAt(n % 45));
+            out.append(ALPHABET.charAt(n / 45 % 45));
+            out.append(ALPHABET.charAt(n / 2025));
+        }
+        if (i < data.length) {
+            int n = data[i] & 0xff;
+            out.append(ALPHABET.charAt(n % 45));
+            out.append(ALPHABET.charAt(n / 45));
+        }
+        return out.toString();
+    }
+
+    public static byte[] decode(CharSequence text) {
+        if (text.length() % 3 == 1) {
+            throw new IllegalArgumentException("Invalid base45 length");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(text.length() / 3 * 2 + 1);
+        int i = 0;
+        for (; i + 2 < text.length(); i += 3) {
+            int n = value(text, i) + value(text, i + 1) * 45 + value(text, i + 2) * 2025;
+            if (n > 0xffff) {
+                throw new IllegalArgumentException("Invalid base45 triplet");
+            }
+            out.write(n >>> 8);
+            out.write(n & 0xff);
+        }
+        if (i < text.length()) {
+            int n = value(text, i) + value(text, i + 1) * 45;
+            if (n > 0xff) {
+                throw new IllegalArgumentException("Invalid base45 pair");
+            }
+            out.write(n);
+        }
+        return out.toByteArray();
+    }
+
+    private static int value(CharSequence text, int index) {
+        char c = text.charAt(index);
+        int v = c < 128 ? VALUES[c] : -1;
+        if (v < 0) {
+            throw new IllegalArgumentException("Invalid base45 character");
+        }
+        return v;
+    }
+}
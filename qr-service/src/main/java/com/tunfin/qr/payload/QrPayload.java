@@ -0,0 +1,22 @@
+package com.tunfin.qr.payload;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * What a signed QR carries. Amount and expiresAt are null for static merchant QRs.
+ */
+public record QrPayload(
+        UUID qrCodeId,
+        UUID merchantId,
+        String merchantName,
+        boolean dynamic,
+        BigDecimal amount,
+        String currency,
+        LocalDateTime expiresAt) {
+
+    public boolean isExpired(LocalDateTime now) {
+        return expiresAt != null && now.isAfter(expiresAt);
+    }
+}
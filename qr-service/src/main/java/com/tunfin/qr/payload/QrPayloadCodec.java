@@ -0,0 +1,198 @@
+package com.tunfin.qr.payload;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Signed, versioned QR payload: {@code TF:} followed by base45 of
+ *
+ * <pre>
+ * version(1) flags(1) qrCodeId(16) merchantId(16) currency(3)
+ * [amount: unscaled(8) scale(1)] [expiresAt: epoch seconds(8)]
+ * nameLength(1) name(UTF-8) tag(16)
+ * </pre>
+ *
+ * where tag is HMAC-SHA256 over everything before it, truncated to 128 bits. A scan can
+ * then be checked for authenticity and expiry without the database.
+ */
+@Component
+@Slf4j
+public class QrPayloadCodec {
+
+    public static final String PREFIX = "TF:";
+
+    private static final byte VERSION = 1;
+    private static final int FLAG_DYNAMIC = 1;
+    private static final int FLAG_AMOUNT = 1 << 1;
+    private static final int FLAG_EXPIRY = 1 << 2;
+    private static final int TAG_LENGTH = 16;
+    private static final int MAX_NAME_BYTES = 64;
+    private static final String HMAC = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac;
+
+    public QrPayloadCodec(@Value("${qr.payload.hmac-secret:}") String secret) {
+        if (secret.isBlank()) {
+            log.warn(">>> QR: qr.payload.hmac-secret is not set, issuing legacy TUNFIN: payloads");
+            this.key = null;
+            this.mac = null;
+            return;
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac m = Mac.getInstance(HMAC);
+                m.init(key);
+                return m;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 unavailable", e);
+            }
+        });
+    }
+
+    /**
+     * Whether signed payloads are issued; without a key only legacy codes are produced.
+     */
+    public boolean isEnabled() {
+        return key != null;
+    }
+
+    public static boolean isSigned(String qrData) {
+        return qrData.startsWith(PREFIX);
+    }
+
+    public String encode(QrPayload payload) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("QR payload signing is not configured");
+        }
+        byte[] name = truncatedName(payload.merchantName());
+        ByteBuffer buf = ByteBuffer.allocate(2 + 32 + 3 + 9 + 8 + 1 + name.length + TAG_LENGTH);
+
+        int flags = (payload.dynamic() ? FLAG_DYNAMIC : 0)
+                | (payload.amount() != null ? FLAG_AMOUNT : 0)
+                | (payload.expiresAt() != null ? FLAG_EXPIRY : 0);
+        buf.put(VERSION).put((byte) flags);
+        putUuid(buf, payload.qrCodeId());
+        putUuid(buf, payload.merchantId());
+        buf.put(currency(payload.currency()));
+        if (payload.amount() != null) {
+            if (payload.amount().unscaledValue().bitLength() >= Long.SIZE
+                    || payload.amount().scale() < Byte.MIN_VALUE || payload.amount().scale() > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Amount cannot be carried by a signed QR code");
+            }
+            buf.putLong(payload.amount().unscaledValue().longValue());
+            buf.put((byte) payload.amount().scale());
+        }
+        if (payload.expiresAt() != null) {
+            buf.putLong(payload.expiresAt().toEpochSecond(ZoneOffset.UTC));
+        }
+        buf.put((byte) name.length).put(name);
+
+        int signedLength = buf.position();
+        buf.put(sign(buf.array(), signedLength), 0, TAG_LENGTH);
+        return PREFIX + Base45.encode(java.util.Arrays.copyOf(buf.array(), buf.position()));
+    }
+
+    /**
+     * Decodes and authenticates a signed payload.
+     *
+     * @throws IllegalArgumentException if the payload is malformed or the signature does not match
+     */
+    public QrPayload decode(String qrData) {
+        if (!isEnabled()) {
+            throw new IllegalArgumentException("Signed QR codes are not accepted");
+        }
+        byte[] bytes;
+        try {
+            bytes = Base45.decode(qrData.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid QR code format");
+        }
+        if (bytes.length < 2 + 32 + 3 + 1 + TAG_LENGTH) {
+            throw new IllegalArgumentException("Invalid QR code structure");
+        }
+        int signedLength = bytes.length - TAG_LENGTH;
+        byte[] expected = java.util.Arrays.copyOf(sign(bytes, signedLength), TAG_LENGTH);
+        byte[] actual = java.util.Arrays.copyOfRange(bytes, signedLength, bytes.length);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new IllegalArgumentException("Invalid QR code signature");
+        }
+
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(bytes, 0, signedLength);
+            if (buf.get() != VERSION) {
+                throw new IllegalArgumentException("Unsupported QR code version");
+            }
+            int flags = buf.get();
+            UUID qrCodeId = new UUID(buf.getLong(), buf.getLong());
+            UUID merchantId = new UUID(buf.getLong(), buf.getLong());
+            byte[] currency = new byte[3];
+            buf.get(currency);
+            BigDecimal amount = null;
+            if ((flags & FLAG_AMOUNT) != 0) {
+                long unscaled = buf.getLong();
+                amount = new BigDecimal(BigInteger.valueOf(unscaled), buf.get());
+            }
+            LocalDateTime expiresAt = null;
+            if ((flags & FLAG_EXPIRY) != 0) {
+                expiresAt = LocalDateTime.ofEpochSecond(buf.getLong(), 0, ZoneOffset.UTC);
+            }
+            byte[] name = new byte[buf.get() & 0xff];
+            buf.get(name);
+            if (buf.hasRemaining()) {
+                throw new IllegalArgumentException("Invalid QR code structure");
+            }
+            return new QrPayload(qrCodeId, merchantId, new String(name, StandardCharsets.UTF_8),
+                    (flags & FLAG_DYNAMIC) != 0, amount, new String(currency, StandardCharsets.US_ASCII),
+                    expiresAt);
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IllegalArgumentException("Invalid QR code structure");
+        }
+    }
+
+    private byte[] sign(byte[] data, int length) {
+        Mac m = mac.get();
+        m.update(data, 0, length);
+        return m.doFinal();
+    }
+
+    private static void putUuid(ByteBuffer buf, UUID id) {
+        buf.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+    }
+
+    private static byte[] currency(String currency) {
+        byte[] bytes = currency == null ? new byte[0] : currency.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length != 3) {
+            throw new IllegalArgumentException("Currency must be a 3-letter code");
+        }
+        return bytes;
+    }
+
+    // Display only; cut on a character boundary so the name stays valid UTF-8
+    private static byte[] truncatedName(String name) {
+        if (name == null) {
+            return new byte[0];
+        }
+        String cut = name;
+        byte[] bytes = cut.getBytes(StandardCharsets.UTF_8);
+        while (bytes.length > MAX_NAME_BYTES) {
+            cut = cut.substring(0, cut.offsetByCodePoints(0, cut.codePointCount(0, cut.length()) - 1));
+            bytes = cut.getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+}
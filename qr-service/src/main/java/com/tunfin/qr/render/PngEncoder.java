@@ -0,0 +1,115 @@
+package com.tunfin.qr.render;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a module matrix straight to a 1-bit grayscale PNG, scaling modules while the rows
+ * are packed. No BufferedImage or ImageIO is involved, and each module row is packed once
+ * and then repeated.
+ */
+final class PngEncoder {
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+    // Deflater holds native memory; keep one per thread instead of one per image
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal
+            .withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+
+    private PngEncoder() {
+    }
+
+    /**
+     * @param matrix one pixel per module, quiet zone included
+     * @param size   requested edge length in pixels; modules are scaled by a whole factor and
+     *               centered, as ZXing's own writer does
+     */
+    static byte[] encode(BitMatrix matrix, int size) {
+        int modules = matrix.getWidth();
+        int edge = Math.max(size, modules);
+        int scale = edge / modules;
+        int padding = (edge - modules * scale) / 2;
+
+        int rowBytes = (edge + 7) / 8;
+        byte[] raw = new byte[(rowBytes + 1) * edge];
+        byte[] white = new byte[rowBytes + 1];
+        Arrays.fill(white, 1, white.length, (byte) 0xff); // byte 0 is the filter type (none)
+
+        byte[] row = new byte[rowBytes + 1];
+        int offset = 0;
+        for (int y = 0; y < padding; y++, offset += row.length) {
+            System.arraycopy(white, 0, raw, offset, row.length);
+        }
+        for (int my = 0; my < modules; my++) {
+            System.arraycopy(white, 0, row, 0, row.length);
+            for (int mx = 0; mx < modules; mx++) {
+                if (matrix.get(mx, my)) {
+                    int from = padding + mx * scale;
+                    for (int x = from; x < from + scale; x++) {
+                        row[1 + (x >>> 3)] &= (byte) ~(0x80 >>> (x & 7));
+                    }
+                }
+            }
+            for (int i = 0; i < scale; i++, offset += row.length) {
+                System.arraycopy(row, 0, raw, offset, row.length);
+            }
+        }
+        for (; offset < raw.length; offset += row.length) {
+            System.arraycopy(white, 0, raw, offset, row.length);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 + raw.length / 8);
+        out.writeBytes(SIGNATURE);
+        byte[] header = new byte[13];
+        writeInt(header, 0, edge);
+        writeInt(header, 4, edge);
+        header[8] = 1; // bit depth
+        header[9] = 0; // grayscale; compression, filter and interlace stay 0
+        writeChunk(out, "IHDR", header, header.length);
+        byte[] compressed = deflate(raw);
+        writeChunk(out, "IDAT", compressed, compressed.length);
+        writeChunk(out, "IEND", new byte[0], 0);
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 8 + 64);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data, int length) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] word = new byte[4];
+        writeInt(word, 0, length);
+        out.writeBytes(word);
+        out.writeBytes(typeBytes);
+        out.write(data, 0, length);
+
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        writeInt(word, 0, (int) crc.getValue());
+        out.writeBytes(word);
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,30 @@
+package com.tunfin.qr.render;
+
+public enum QrImageFormat {
+    PNG("image/png"),
+    SVG("image/svg+xml");
+
+    private final String contentType;
+
+    QrImageFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Parses a client-supplied format name, falling back to the given default when absent.
+     */
+    public static QrImageFormat of(String name, QrImageFormat fallback) {
+        if (name == null || name.isBlank()) {
+            return fallback;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported QR image format: " + name);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.tunfin.qr.render;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders QR payloads to PNG or SVG. The matrix is encoded at one pixel per module and the
+ * encoders scale it themselves. Images of long-lived payloads (static merchant QRs) are
+ * kept in an LRU keyed by (qrData, size, format), so they are rendered once.
+ */
+@Component
+public class QrImageRenderer {
+
+    private static final Map<EncodeHintType, Object> HINTS = Map.of(
+            EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H,
+            EncodeHintType.CHARACTER_SET, "UTF-8",
+            EncodeHintType.MARGIN, 1);
+
+    // QRCodeWriter keeps no state between calls
+    private final QRCodeWriter writer = new QRCodeWriter();
+    private final Map<CacheKey, byte[]> cache;
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong renders = new AtomicLong();
+
+    public QrImageRenderer(@Value("${qr.render.cache-size:1024}") int cacheSize) {
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, byte[]> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * @param cacheable whether the payload will be rendered again (static QRs); one-off
+     *                  dynamic payloads would only evict useful entries
+     */
+    public byte[] render(String qrData, int size, QrImageFormat format, boolean cacheable) {
+        if (!cacheable) {
+            return encode(qrData, size, format);
+        }
+        CacheKey key = new CacheKey(qrData, size, format);
+        byte[] image = cache.get(key);
+        if (image != null) {
+            cacheHits.incrementAndGet();
+            return image;
+        }
+        image = encode(qrData, size, format);
+        cache.put(key, image);
+        return image;
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getRenders() {
+        return renders.get();
+    }
+
+    private byte[] encode(String qrData, int size, QrImageFormat format) {
+        renders.incrementAndGet();
+        BitMatrix matrix;
+        try {
+            matrix = writer.encode(qrData, BarcodeFormat.QR_CODE, 0, 0, HINTS);
+        } catch (WriterException e) {
+            throw new RuntimeException("Failed to generate QR code image", e);
+        }
+        return switch (format) {
+            case PNG -> PngEncoder.encode(matrix, size);
+            case SVG -> SvgEncoder.encode(matrix, size);
+        };
+    }
+
+    private record CacheKey(String qrData, int size, QrImageFormat format) {
+    }
+}
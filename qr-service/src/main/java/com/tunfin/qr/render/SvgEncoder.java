@@ -0,0 +1,42 @@
+package com.tunfin.qr.render;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a module matrix as SVG with one path made of horizontal runs. The viewBox is in
+ * module units, so the image stays sharp at any display size.
+ */
+final class SvgEncoder {
+
+    private SvgEncoder() {
+    }
+
+    static byte[] encode(BitMatrix matrix, int size) {
+        int modules = matrix.getWidth();
+        StringBuilder svg = new StringBuilder(256 + modules * modules * 2);
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 ")
+                .append(modules).append(' ').append(modules)
+                .append("\" width=\"").append(size).append("\" height=\"").append(size)
+                .append("\" shape-rendering=\"crispEdges\">")
+                .append("<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path fill=\"#000\" d=\"");
+        for (int y = 0; y < modules; y++) {
+            int x = 0;
+            while (x < modules) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < modules && matrix.get(x, y)) {
+                    x++;
+                }
+                svg.append('M').append(start).append(',').append(y)
+                        .append('h').append(x - start).append("v1h-").append(x - start).append('z');
+            }
+        }
+        svg.append("\"/></svg>");
+        return svg.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
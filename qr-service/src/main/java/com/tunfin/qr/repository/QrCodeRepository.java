@@ -2,6 +2,8 @@ package com.tunfin.qr.repository;
 
 import com.tunfin.qr.model.QrCode;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,5 +14,9 @@ import java.util.UUID;
 public interface QrCodeRepository extends JpaRepository<QrCode, UUID> {
     List<QrCode> findByMerchantId(UUID merchantId);
     Optional<QrCode> findByQrData(String qrData);
+
+    // Signed payloads carry everything else; only the status has to come from the database
+    @Query("SELECT q.status FROM QrCode q WHERE q.id = :id")
+    Optional<QrCode.QrStatus> findStatusById(@Param("id") UUID id);
     List<QrCode> findByMerchantIdAndQrType(UUID merchantId, QrCode.QrType qrType);
 }
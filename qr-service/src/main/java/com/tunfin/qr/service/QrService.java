@@ -1,26 +1,25 @@
 package com.tunfin.qr.service;
 
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.EncodeHintType;
-import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
-import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.tunfin.qr.client.PaymentClient;
 import com.tunfin.qr.dto.QrDto;
 import com.tunfin.qr.model.PaymentIntent;
 import com.tunfin.qr.model.QrCode;
 import com.tunfin.qr.repository.PaymentIntentRepository;
 import com.tunfin.qr.repository.QrCodeRepository;
+import com.tunfin.qr.payload.QrPayload;
+import com.tunfin.qr.payload.QrPayloadCodec;
+import com.tunfin.qr.render.QrImageFormat;
+import com.tunfin.qr.render.QrImageRenderer;
+import com.tunfin.qr.state.IntentState;
+import com.tunfin.qr.state.QrState;
+import com.tunfin.qr.state.QrStateStore;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -31,42 +30,63 @@ public class QrService {
 
     private final QrCodeRepository qrCodeRepository;
     private final PaymentIntentRepository paymentIntentRepository;
-    private final com.tunfin.qr.client.PaymentClient paymentClient;
+    private final PaymentClient paymentClient;
+    private final QrImageRenderer qrImageRenderer;
+    private final QrPayloadCodec qrPayloadCodec;
+    private final QrStateStore qrStateStore;
+
+    private static final int AMOUNT_SCALE = 3; // millimes
 
     @Value("${qr.default.size:300}")
     private int defaultQrSize;
 
+    @Value("${qr.default.format:PNG}")
+    private QrImageFormat defaultQrFormat;
+
     @Value("${qr.dynamic.expiry.minutes:15}")
     private int defaultExpiryMinutes;
 
+    @Value("${qr.intent.expiry.minutes:15}")
+    private int intentExpiryMinutes;
+
     /**
      * Generate a static QR code for a merchant
      * Static QR contains only merchant identification
      */
     @Transactional
     public QrDto.QrCodeResponse generateStaticQr(QrDto.GenerateStaticQrRequest request) {
-        // Create QR data in format: TUNFIN:MERCHANT:{merchantId}:{merchantName}
-        String qrData = String.format("TUNFIN:MERCHANT:%s:%s",
-                request.getMerchantId(),
-                request.getMerchantName());
-
         QrCode qrCode = QrCode.builder()
                 .merchantId(request.getMerchantId())
                 .qrType(QrCode.QrType.STATIC)
-                .qrData(qrData)
                 .currency(request.getCurrency())
                 .status(QrCode.QrStatus.ACTIVE)
                 .build();
 
+        String qrData;
+        if (qrPayloadCodec.isEnabled()) {
+            qrData = qrPayloadCodec.encode(new QrPayload(qrCode.getId(), request.getMerchantId(),
+                    request.getMerchantName(), false, null, request.getCurrency(), null));
+        } else {
+            // Legacy format: TUNFIN:MERCHANT:{merchantId}:{merchantName}
+            qrData = String.format("TUNFIN:MERCHANT:%s:%s",
+                    request.getMerchantId(),
+                    request.getMerchantName());
+        }
+        qrCode.setQrData(qrData);
+
         qrCode = qrCodeRepository.save(qrCode);
 
-        byte[] qrImageBytes = generateQrImage(qrData);
+        // A legacy static payload is the same every time a merchant regenerates its code, so its
+        // image is cached; a signed one carries the new QR id and would never be rendered again
+        QrImageFormat format = QrImageFormat.of(request.getFormat(), defaultQrFormat);
+        byte[] qrImageBytes = qrImageRenderer.render(qrData, defaultQrSize, format, !qrPayloadCodec.isEnabled());
 
         return QrDto.QrCodeResponse.builder()
                 .qrCodeId(qrCode.getId())
                 .qrType(qrCode.getQrType().name())
                 .qrDataString(qrData)
                 .qrImageBytes(qrImageBytes)
+                .imageFormat(format.name())
                 .currency(qrCode.getCurrency())
                 .status(qrCode.getStatus().name())
                 .build();
@@ -79,37 +99,48 @@ public class QrService {
     @Transactional
     public QrDto.QrCodeResponse generateDynamicQr(QrDto.GenerateDynamicQrRequest request) {
         int expiryMinutes = request.getExpiryMinutes() != null ? request.getExpiryMinutes() : defaultExpiryMinutes;
+        BigDecimal amount = requireAmount(request.getAmount());
 
-        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(expiryMinutes);
-
-        // Create QR data in format:
-        // TUNFIN:PAYMENT:{merchantId}:{amount}:{currency}:{expiryTimestamp}
-        String qrData = String.format("TUNFIN:PAYMENT:%s:%s:%s:%s:%s",
-                request.getMerchantId(),
-                request.getMerchantName(),
-                request.getAmount(),
-                request.getCurrency(),
-                expiresAt.toString());
+        // Whole seconds, as carried by the signed payload
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(expiryMinutes).withNano(0);
 
         QrCode qrCode = QrCode.builder()
                 .merchantId(request.getMerchantId())
                 .qrType(QrCode.QrType.DYNAMIC)
-                .qrData(qrData)
-                .amount(request.getAmount())
+                .amount(amount)
                 .currency(request.getCurrency())
                 .expiresAt(expiresAt)
                 .status(QrCode.QrStatus.ACTIVE)
                 .build();
 
+        String qrData;
+        if (qrPayloadCodec.isEnabled()) {
+            qrData = qrPayloadCodec.encode(new QrPayload(qrCode.getId(), request.getMerchantId(),
+                    request.getMerchantName(), true, amount, request.getCurrency(), expiresAt));
+        } else {
+            // Legacy format: TUNFIN:PAYMENT:{merchantId}:{merchantName}:{amount}:{currency}:{expiryTimestamp}
+            qrData = String.format("TUNFIN:PAYMENT:%s:%s:%s:%s:%s",
+                    request.getMerchantId(),
+                    request.getMerchantName(),
+                    amount,
+                    request.getCurrency(),
+                    expiresAt.toString());
+        }
+        qrCode.setQrData(qrData);
+
         qrCode = qrCodeRepository.save(qrCode);
+        QrCode created = qrCode;
+        afterCommit(() -> qrStateStore.track(created));
 
-        byte[] qrImageBytes = generateQrImage(qrData);
+        QrImageFormat format = QrImageFormat.of(request.getFormat(), defaultQrFormat);
+        byte[] qrImageBytes = qrImageRenderer.render(qrData, defaultQrSize, format, false);
 
         return QrDto.QrCodeResponse.builder()
                 .qrCodeId(qrCode.getId())
                 .qrType(qrCode.getQrType().name())
                 .qrDataString(qrData)
                 .qrImageBytes(qrImageBytes)
+                .imageFormat(format.name())
                 .amount(qrCode.getAmount())
                 .currency(qrCode.getCurrency())
                 .expiresAt(qrCode.getExpiresAt())
@@ -117,13 +148,36 @@ public class QrService {
                 .build();
     }
 
+    /**
+     * A positive amount in at most millimes, with trailing zeros dropped so the signed payload
+     * can carry it as a long of minor units
+     */
+    private static BigDecimal requireAmount(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        BigDecimal stripped = amount.stripTrailingZeros();
+        if (stripped.scale() > AMOUNT_SCALE) {
+            throw new IllegalArgumentException("Amount must have at most " + AMOUNT_SCALE + " decimals");
+        }
+        BigDecimal normalized = stripped.setScale(Math.max(stripped.scale(), 0));
+        if (normalized.unscaledValue().bitLength() >= Long.SIZE) {
+            throw new IllegalArgumentException("Amount is too large");
+        }
+        return normalized;
+    }
+
     /**
      * Validate a scanned QR code
      */
     public QrDto.QrValidationResponse validateQr(QrDto.ValidateQrRequest request) {
         String qrData = request.getQrDataString();
 
-        // Parse QR data
+        if (QrPayloadCodec.isSigned(qrData)) {
+            return validateSignedQr(qrData);
+        }
+
+        // Legacy TUNFIN: payloads are looked up by their full text
         if (!qrData.startsWith("TUNFIN:")) {
             return QrDto.QrValidationResponse.builder()
                     .valid(false)
@@ -154,11 +208,10 @@ public class QrService {
 
         QrCode qrCode = qrCodeOpt.get();
 
-        // Check if expired (for dynamic QR)
+        // Check if expired (for dynamic QR); QrExpirySweeper persists the status, this path only reads
         if (qrCode.getQrType() == QrCode.QrType.DYNAMIC) {
-            if (qrCode.getExpiresAt() != null && LocalDateTime.now().isAfter(qrCode.getExpiresAt())) {
-                qrCode.setStatus(QrCode.QrStatus.EXPIRED);
-                qrCodeRepository.save(qrCode);
+            if (qrCode.getStatus() == QrCode.QrStatus.EXPIRED
+                    || (qrCode.getExpiresAt() != null && LocalDateTime.now().isAfter(qrCode.getExpiresAt()))) {
                 return QrDto.QrValidationResponse.builder()
                         .valid(false)
                         .errorMessage("QR code has expired")
@@ -166,8 +219,11 @@ public class QrService {
             }
         }
 
-        // Check if already used (for dynamic QR)
-        if (qrCode.getStatus() == QrCode.QrStatus.USED) {
+        // Check if already used (for dynamic QR); the state store may be ahead of the row
+        QrCode.QrStatus status = qrStateStore.findQr(qrCode.getId())
+                .map(QrState::getStatus)
+                .orElse(qrCode.getStatus());
+        if (status == QrCode.QrStatus.USED) {
             return QrDto.QrValidationResponse.builder()
                     .valid(false)
                     .errorMessage("QR code has already been used")
@@ -192,18 +248,70 @@ public class QrService {
         return responseBuilder.build();
     }
 
+    /**
+     * Signature and expiry are checked in memory; the database is only asked for the
+     * status, by primary key
+     */
+    private QrDto.QrValidationResponse validateSignedQr(String qrData) {
+        QrPayload payload;
+        try {
+            payload = qrPayloadCodec.decode(qrData);
+        } catch (IllegalArgumentException e) {
+            return QrDto.QrValidationResponse.builder()
+                    .valid(false)
+                    .errorMessage(e.getMessage())
+                    .build();
+        }
+
+        if (payload.isExpired(LocalDateTime.now())) {
+            return QrDto.QrValidationResponse.builder()
+                    .valid(false)
+                    .errorMessage("QR code has expired")
+                    .build();
+        }
+
+        QrCode.QrStatus status = qrStateStore.findQr(payload.qrCodeId())
+                .map(QrState::getStatus)
+                .or(() -> qrCodeRepository.findStatusById(payload.qrCodeId()))
+                .orElse(null);
+        if (status != QrCode.QrStatus.ACTIVE) {
+            String error = status == null ? "QR code not found" : switch (status) {
+                case USED -> "QR code has already been used";
+                case EXPIRED -> "QR code has expired";
+                default -> "QR code has been cancelled";
+            };
+            return QrDto.QrValidationResponse.builder()
+                    .valid(false)
+                    .errorMessage(error)
+                    .build();
+        }
+
+        return QrDto.QrValidationResponse.builder()
+                .valid(true)
+                .qrCodeId(payload.qrCodeId())
+                .merchantId(payload.merchantId())
+                .merchantName(payload.merchantName())
+                .qrType(payload.dynamic() ? QrCode.QrType.DYNAMIC.name() : QrCode.QrType.STATIC.name())
+                .currency(payload.currency())
+                .amount(payload.amount())
+                .expiresAt(payload.expiresAt())
+                .build();
+    }
+
     /**
      * Create a payment intent from a scanned QR code
      */
     @Transactional
     public QrDto.PaymentIntentResponse createPaymentIntent(QrDto.CreatePaymentIntentRequest request) {
-        QrCode qrCode = qrCodeRepository.findById(request.getQrCodeId())
-                .orElseThrow(() -> new RuntimeException("QR code not found"));
+        QrState qr = qrState(request.getQrCodeId());
 
         // Determine amount
         BigDecimal amount;
-        if (qrCode.getQrType() == QrCode.QrType.DYNAMIC) {
-            amount = qrCode.getAmount();
+        if (qr.isDynamic()) {
+            if (qr.getStatus() != QrCode.QrStatus.ACTIVE || qr.isExpired(LocalDateTime.now())) {
+                throw new RuntimeException("QR code is no longer active");
+            }
+            amount = qr.getAmount();
         } else {
             // For static QR, user must provide amount
             if (request.getAmount() == null) {
@@ -212,17 +320,26 @@ public class QrService {
             amount = request.getAmount();
         }
 
+        // An intent never outlives its QR code
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(intentExpiryMinutes);
+        if (qr.getExpiresAt() != null && qr.getExpiresAt().isBefore(expiresAt)) {
+            expiresAt = qr.getExpiresAt();
+        }
+
         // Create payment intent
         PaymentIntent paymentIntent = PaymentIntent.builder()
-                .qrCodeId(qrCode.getId())
+                .qrCodeId(qr.getId())
                 .payerAccountId(request.getPayerAccountId())
-                .merchantAccountId(qrCode.getMerchantId()) // Assuming merchantId is the account ID
+                .merchantAccountId(qr.getMerchantId()) // Assuming merchantId is the account ID
                 .amount(amount)
-                .currency(qrCode.getCurrency())
+                .currency(qr.getCurrency())
                 .status(PaymentIntent.PaymentStatus.PENDING)
+                .expiresAt(expiresAt)
                 .build();
 
         paymentIntent = paymentIntentRepository.save(paymentIntent);
+        PaymentIntent created = paymentIntent;
+        afterCommit(() -> qrStateStore.track(created));
 
         return QrDto.PaymentIntentResponse.builder()
                 .paymentIntentId(paymentIntent.getId())
@@ -236,50 +353,16 @@ public class QrService {
     }
 
     /**
-     * Mark payment intent as completed
+     * Mark payment intent as completed. The status changes are written before returning.
      */
-    @Transactional
     public void completePaymentIntent(UUID paymentIntentId, String transactionId) {
-        PaymentIntent paymentIntent = paymentIntentRepository.findById(paymentIntentId)
-                .orElseThrow(() -> new RuntimeException("Payment intent not found"));
-
-        paymentIntent.setStatus(PaymentIntent.PaymentStatus.COMPLETED);
-        paymentIntent.setTransactionId(transactionId);
-        paymentIntent.setCompletedAt(LocalDateTime.now());
-        paymentIntentRepository.save(paymentIntent);
+        IntentState intent = intentState(paymentIntentId);
+        qrStateStore.settle(intent, PaymentIntent.PaymentStatus.COMPLETED, transactionId);
 
         // Mark dynamic QR as used
-        QrCode qrCode = qrCodeRepository.findById(paymentIntent.getQrCodeId())
-                .orElseThrow(() -> new RuntimeException("QR code not found"));
-
-        if (qrCode.getQrType() == QrCode.QrType.DYNAMIC) {
-            qrCode.setStatus(QrCode.QrStatus.USED);
-            qrCodeRepository.save(qrCode);
-        }
-    }
-
-    /**
-     * Generate QR code image using ZXing
-     */
-    private byte[] generateQrImage(String qrData) {
-        try {
-            Map<EncodeHintType, Object> hints = new HashMap<>();
-            hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
-            hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-            hints.put(EncodeHintType.MARGIN, 1);
-
-            QRCodeWriter qrCodeWriter = new QRCodeWriter();
-            BitMatrix bitMatrix = qrCodeWriter.encode(qrData, BarcodeFormat.QR_CODE,
-                    defaultQrSize, defaultQrSize, hints);
-
-            BufferedImage qrImage = MatrixToImageWriter.toBufferedImage(bitMatrix);
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(qrImage, "PNG", baos);
-            return baos.toByteArray();
-
-        } catch (WriterException | IOException e) {
-            throw new RuntimeException("Failed to generate QR code image", e);
+        QrState qr = qrState(intent.getQrCodeId());
+        if (qr.isDynamic()) {
+            qrStateStore.markUsed(qr);
         }
     }
 
@@ -287,65 +370,110 @@ public class QrService {
      * Get payment intent by ID
      */
     public PaymentIntent getPaymentIntent(UUID paymentIntentId) {
-        return paymentIntentRepository.findById(paymentIntentId)
-                .orElseThrow(() -> new RuntimeException("Payment intent not found"));
+        return intentState(paymentIntentId).toEntity();
     }
 
     /**
-     * Execute a payment intent by calling the payment service
+     * Execute a payment intent by calling the payment service. The intent and a dynamic QR
+     * are claimed with conditional UPDATEs before the transfer, so neither can pay twice
+     * across instances or restarts; reads come from the in-memory state.
      */
-    @Transactional
     public QrDto.PaymentExecutionResponse executePaymentIntent(UUID paymentIntentId) {
-        PaymentIntent intent = paymentIntentRepository.findById(paymentIntentId)
-                .orElseThrow(() -> new RuntimeException("Payment intent not found"));
+        IntentState intent = intentState(paymentIntentId);
 
-        if (intent.getStatus() == PaymentIntent.PaymentStatus.COMPLETED) {
-            throw new RuntimeException("Payment intent already completed");
+        if (!intent.tryBeginExecution()) {
+            throw new RuntimeException("Payment intent is already being executed");
         }
+        try {
+            if (intent.getStatus() == PaymentIntent.PaymentStatus.COMPLETED) {
+                throw new RuntimeException("Payment intent already completed");
+            }
 
-        if (intent.getStatus() == PaymentIntent.PaymentStatus.FAILED) {
-            throw new RuntimeException("Payment intent has failed");
-        }
+            if (intent.getStatus() == PaymentIntent.PaymentStatus.EXPIRED
+                    || (intent.getStatus() == PaymentIntent.PaymentStatus.PENDING
+                            && intent.isExpired(LocalDateTime.now()))) {
+                qrStateStore.expire(intent);
+                throw new RuntimeException("Payment intent has expired");
+            }
 
-        try {
-            // Call payment service to execute the transfer
-            var response = paymentClient.transfer(
-                    new com.tunfin.qr.client.PaymentClient.TransferRequest(
-                            intent.getPayerAccountId(),
-                            intent.getMerchantAccountId(),
-                            intent.getAmount()));
-
-            // Mark intent as completed
-            intent.setStatus(PaymentIntent.PaymentStatus.COMPLETED);
-            intent.setTransactionId(response.id().toString());
-            intent.setCompletedAt(LocalDateTime.now());
-            paymentIntentRepository.save(intent);
-
-            // Mark dynamic QR as used
-            QrCode qrCode = qrCodeRepository.findById(intent.getQrCodeId())
-                    .orElseThrow(() -> new RuntimeException("QR code not found"));
-
-            if (qrCode.getQrType() == QrCode.QrType.DYNAMIC) {
-                qrCode.setStatus(QrCode.QrStatus.USED);
-                qrCodeRepository.save(qrCode);
+            if (intent.getStatus() == PaymentIntent.PaymentStatus.PROCESSING) {
+                throw new RuntimeException("Payment intent is already being executed");
+            }
+
+            if (intent.getStatus() != PaymentIntent.PaymentStatus.PENDING) {
+                throw new RuntimeException("Payment intent has failed");
+            }
+
+            if (!qrStateStore.claim(intent)) {
+                throw new RuntimeException("Payment intent is no longer pending");
+            }
+
+            // Claim a dynamic QR before moving money, so two intents on one code can't both pay
+            QrState qr = qrState(intent.getQrCodeId());
+            if (qr.isDynamic() && (qr.isExpired(LocalDateTime.now()) || !qrStateStore.markUsed(qr))) {
+                qrStateStore.settle(intent, PaymentIntent.PaymentStatus.FAILED, null);
+                return QrDto.PaymentExecutionResponse.builder()
+                        .paymentIntentId(paymentIntentId)
+                        .status("FAILED")
+                        .message("Payment failed: QR code is no longer active")
+                        .build();
+            }
+
+            PaymentClient.PaymentResponse response;
+            try {
+                // Call payment service to execute the transfer
+                response = paymentClient.transfer(new PaymentClient.TransferRequest(
+                        intent.getPayerAccountId(),
+                        intent.getMerchantAccountId(),
+                        intent.getAmount()));
+            } catch (Exception e) {
+                if (qr.isDynamic()) {
+                    qrStateStore.release(qr);
+                }
+                qrStateStore.settle(intent, PaymentIntent.PaymentStatus.FAILED, null);
+
+                return QrDto.PaymentExecutionResponse.builder()
+                        .paymentIntentId(paymentIntentId)
+                        .status("FAILED")
+                        .message("Payment failed: " + e.getMessage())
+                        .build();
             }
 
+            // Money has moved: if this write fails the intent stays PROCESSING, never payable again
+            qrStateStore.settle(intent, PaymentIntent.PaymentStatus.COMPLETED, response.id().toString());
+
             return QrDto.PaymentExecutionResponse.builder()
                     .paymentIntentId(paymentIntentId)
                     .status("SUCCESS")
                     .transactionId(response.id().toString())
                     .message("Payment executed successfully")
                     .build();
+        } finally {
+            intent.endExecution();
+        }
+    }
 
-        } catch (Exception e) {
-            intent.setStatus(PaymentIntent.PaymentStatus.FAILED);
-            paymentIntentRepository.save(intent);
+    private QrState qrState(UUID qrCodeId) {
+        return qrStateStore.findQr(qrCodeId).orElseGet(() -> qrStateStore.track(
+                qrCodeRepository.findById(qrCodeId)
+                        .orElseThrow(() -> new RuntimeException("QR code not found"))));
+    }
 
-            return QrDto.PaymentExecutionResponse.builder()
-                    .paymentIntentId(paymentIntentId)
-                    .status("FAILED")
-                    .message("Payment failed: " + e.getMessage())
-                    .build();
-        }
+    private IntentState intentState(UUID paymentIntentId) {
+        return qrStateStore.findIntent(paymentIntentId).orElseGet(() -> {
+            PaymentIntent intent = paymentIntentRepository.findById(paymentIntentId)
+                    .orElseThrow(() -> new RuntimeException("Payment intent not found"));
+            return qrStateStore.track(intent);
+        });
+    }
+
+    // Only committed rows go into the state store
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
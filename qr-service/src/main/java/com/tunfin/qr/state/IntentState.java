@@ -0,0 +1,107 @@
+package com.tunfin.qr.state;
+
+import com.tunfin.qr.model.PaymentIntent;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory copy of a payment intent. {@link #tryBeginExecution()} turns away a second
+ * execution of one intent on this instance before it reaches the database, where the claim
+ * that actually decides it is made.
+ */
+@Getter
+public class IntentState {
+
+    private final UUID id;
+    private final UUID qrCodeId;
+    private final UUID payerAccountId;
+    private final UUID merchantAccountId;
+    private final BigDecimal amount;
+    private final String currency;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime expiresAt;
+    private final LocalDateTime evictAt;
+    private final AtomicReference<PaymentIntent.PaymentStatus> status;
+    @Getter(lombok.AccessLevel.NONE)
+    private final AtomicBoolean executing = new AtomicBoolean();
+    private volatile String transactionId;
+    private volatile LocalDateTime completedAt;
+
+    IntentState(PaymentIntent intent, LocalDateTime evictAt) {
+        this.id = intent.getId();
+        this.qrCodeId = intent.getQrCodeId();
+        this.payerAccountId = intent.getPayerAccountId();
+        this.merchantAccountId = intent.getMerchantAccountId();
+        this.amount = intent.getAmount();
+        this.currency = intent.getCurrency();
+        this.createdAt = intent.getCreatedAt();
+        this.expiresAt = intent.getExpiresAt();
+        this.evictAt = evictAt;
+        this.status = new AtomicReference<>(intent.getStatus());
+        this.transactionId = intent.getTransactionId();
+        this.completedAt = intent.getCompletedAt();
+    }
+
+    public PaymentIntent.PaymentStatus getStatus() {
+        return status.get();
+    }
+
+    public boolean isExpired(LocalDateTime now) {
+        return expiresAt != null && now.isAfter(expiresAt);
+    }
+
+    public boolean tryBeginExecution() {
+        return executing.compareAndSet(false, true);
+    }
+
+    public boolean isExecuting() {
+        return executing.get();
+    }
+
+    public void endExecution() {
+        executing.set(false);
+    }
+
+    boolean finish(PaymentIntent.PaymentStatus next, String transactionId) {
+        if (!status.compareAndSet(PaymentIntent.PaymentStatus.PENDING, next)) {
+            return false;
+        }
+        this.transactionId = transactionId;
+        this.completedAt = LocalDateTime.now();
+        return true;
+    }
+
+    void settle(PaymentIntent.PaymentStatus next, String transactionId, LocalDateTime completedAt) {
+        this.transactionId = transactionId;
+        this.completedAt = completedAt;
+        status.set(next);
+    }
+
+    void setStatus(PaymentIntent.PaymentStatus next) {
+        status.set(next);
+    }
+
+    /**
+     * A detached entity for API responses.
+     */
+    public PaymentIntent toEntity() {
+        return PaymentIntent.builder()
+                .id(id)
+                .qrCodeId(qrCodeId)
+                .payerAccountId(payerAccountId)
+                .merchantAccountId(merchantAccountId)
+                .amount(amount)
+                .currency(currency)
+                .status(getStatus())
+                .transactionId(transactionId)
+                .createdAt(createdAt)
+                .expiresAt(expiresAt)
+                .completedAt(completedAt)
+                .build();
+    }
+}
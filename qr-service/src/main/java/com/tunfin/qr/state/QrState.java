@@ -0,0 +1,53 @@
+package com.tunfin.qr.state;
+
+import com.tunfin.qr.model.QrCode;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory copy of a QR code's payment-relevant fields. Only the status changes, and only
+ * after the database has accepted the change.
+ */
+@Getter
+public class QrState {
+
+    private final UUID id;
+    private final UUID merchantId;
+    private final QrCode.QrType qrType;
+    private final BigDecimal amount;
+    private final String currency;
+    private final LocalDateTime expiresAt;
+    private final LocalDateTime evictAt;
+    private final AtomicReference<QrCode.QrStatus> status;
+
+    QrState(QrCode qrCode, LocalDateTime evictAt) {
+        this.id = qrCode.getId();
+        this.merchantId = qrCode.getMerchantId();
+        this.qrType = qrCode.getQrType();
+        this.amount = qrCode.getAmount();
+        this.currency = qrCode.getCurrency();
+        this.expiresAt = qrCode.getExpiresAt();
+        this.evictAt = evictAt;
+        this.status = new AtomicReference<>(qrCode.getStatus());
+    }
+
+    public QrCode.QrStatus getStatus() {
+        return status.get();
+    }
+
+    public boolean isDynamic() {
+        return qrType == QrCode.QrType.DYNAMIC;
+    }
+
+    public boolean isExpired(LocalDateTime now) {
+        return expiresAt != null && now.isAfter(expiresAt);
+    }
+
+    void setStatus(QrCode.QrStatus next) {
+        status.set(next);
+    }
+}
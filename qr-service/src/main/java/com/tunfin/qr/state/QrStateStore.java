@@ -0,0 +1,211 @@
+package com.tunfin.qr.state;
+
+import com.tunfin.qr.model.PaymentIntent;
+import com.tunfin.qr.model.QrCode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hot state for the scan-to-pay flow: QR codes and payment intents touched by recent
+ * checkouts, held in memory so validate, create-intent and execute don't reload rows.
+ * Every transition that guards money (claiming a dynamic QR, claiming an intent for
+ * execution, and settling it) is a conditional UPDATE made before the in-memory copy
+ * changes, so the database decides between instances and survives a crash. Only expiring
+ * a still-pending intent is written behind in JDBC batches. Entries are evicted at the
+ * QR's expiresAt (or after a TTL for codes without one), never while a write is pending.
+ *
+ * <p>An intent that was claimed but not settled when the instance went down stays
+ * PROCESSING, with its QR USED, rather than becoming payable again.
+ */
+@Component
+@Slf4j
+public class QrStateStore {
+
+    private static final String CLAIM_QR = "UPDATE qr_codes SET status = 'USED' WHERE id = ? AND status = 'ACTIVE'";
+    private static final String RELEASE_QR = "UPDATE qr_codes SET status = 'ACTIVE' WHERE id = ? AND status = 'USED'";
+    private static final String CLAIM_INTENT = """
+            UPDATE payment_intents SET status = 'PROCESSING' WHERE id = ? AND status = 'PENDING'""";
+    private static final String SETTLE_INTENT = """
+            UPDATE payment_intents SET status = ?, transaction_id = ?, completed_at = ?
+            WHERE id = ? AND status IN ('PENDING', 'PROCESSING')""";
+    private static final String EXPIRE_INTENT = """
+            UPDATE payment_intents SET status = 'EXPIRED', completed_at = ?
+            WHERE id = ? AND status = 'PENDING'""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlMinutes;
+
+    private final Map<UUID, QrState> qrCodes = new ConcurrentHashMap<>();
+    private final Map<UUID, IntentState> intents = new ConcurrentHashMap<>();
+    private final Set<UUID> dirtyIntents = ConcurrentHashMap.newKeySet();
+
+    public QrStateStore(JdbcTemplate jdbcTemplate, @Value("${qr.state.ttl-minutes:30}") long ttlMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMinutes = ttlMinutes;
+    }
+
+    public Optional<QrState> findQr(UUID id) {
+        return Optional.ofNullable(qrCodes.get(id));
+    }
+
+    /**
+     * Starts tracking a QR code loaded from or just written to the database. An entry that
+     * is already tracked wins, since it may hold a newer status.
+     */
+    public QrState track(QrCode qrCode) {
+        LocalDateTime evictAt = qrCode.getExpiresAt() != null
+                ? qrCode.getExpiresAt()
+                : LocalDateTime.now().plusMinutes(ttlMinutes);
+        return qrCodes.computeIfAbsent(qrCode.getId(), id -> new QrState(qrCode, evictAt));
+    }
+
+    /**
+     * ACTIVE -> USED. Only one caller, on any instance, can win for a given code.
+     */
+    public boolean markUsed(QrState qr) {
+        if (jdbcTemplate.update(CLAIM_QR, qr.getId()) == 1) {
+            qr.setStatus(QrCode.QrStatus.USED);
+            return true;
+        }
+        refresh(qr);
+        return false;
+    }
+
+    /**
+     * USED -> ACTIVE, for a payment that failed after the code was claimed.
+     */
+    public boolean release(QrState qr) {
+        if (jdbcTemplate.update(RELEASE_QR, qr.getId()) == 1) {
+            qr.setStatus(QrCode.QrStatus.ACTIVE);
+            return true;
+        }
+        refresh(qr);
+        return false;
+    }
+
+    public Optional<IntentState> findIntent(UUID id) {
+        return Optional.ofNullable(intents.get(id));
+    }
+
+    public IntentState track(PaymentIntent intent) {
+        LocalDateTime ttl = LocalDateTime.now().plusMinutes(ttlMinutes);
+        LocalDateTime evictAt = intent.getExpiresAt() != null && intent.getExpiresAt().isBefore(ttl)
+                ? intent.getExpiresAt()
+                : ttl;
+        return intents.computeIfAbsent(intent.getId(), id -> new IntentState(intent, evictAt));
+    }
+
+    /**
+     * PENDING -> PROCESSING, made before any money moves. Only one caller, on any instance,
+     * can win for a given intent.
+     */
+    public boolean claim(IntentState intent) {
+        if (jdbcTemplate.update(CLAIM_INTENT, intent.getId()) == 1) {
+            intent.setStatus(PaymentIntent.PaymentStatus.PROCESSING);
+            return true;
+        }
+        refresh(intent);
+        return false;
+    }
+
+    /**
+     * PENDING or PROCESSING -> COMPLETED or FAILED, written before returning.
+     */
+    public boolean settle(IntentState intent, PaymentIntent.PaymentStatus status, String transactionId) {
+        LocalDateTime completedAt = LocalDateTime.now();
+        if (jdbcTemplate.update(SETTLE_INTENT, status.name(), transactionId, Timestamp.valueOf(completedAt),
+                intent.getId()) == 1) {
+            intent.settle(status, transactionId, completedAt);
+            return true;
+        }
+        refresh(intent);
+        return false;
+    }
+
+    /**
+     * PENDING -> EXPIRED, written behind: the sweeper makes the same change, and an intent
+     * past its expiry is refused whatever the database still shows.
+     */
+    public boolean expire(IntentState intent) {
+        if (!intent.finish(PaymentIntent.PaymentStatus.EXPIRED, null)) {
+            return false;
+        }
+        dirtyIntents.add(intent.getId());
+        return true;
+    }
+
+    // A claim lost to another instance means the copy is stale; take the database's status
+    private void refresh(QrState qr) {
+        jdbcTemplate.query("SELECT status FROM qr_codes WHERE id = ?",
+                (RowCallbackHandler) rs -> qr.setStatus(QrCode.QrStatus.valueOf(rs.getString(1))), qr.getId());
+    }
+
+    private void refresh(IntentState intent) {
+        jdbcTemplate.query("SELECT status FROM payment_intents WHERE id = ?",
+                (RowCallbackHandler) rs -> intent.setStatus(PaymentIntent.PaymentStatus.valueOf(rs.getString(1))),
+                intent.getId());
+    }
+
+    @Scheduled(fixedDelayString = "${qr.state.flush-interval-ms:200}")
+    public synchronized void flush() {
+        List<UUID> intentIds = drain(dirtyIntents);
+        if (!intentIds.isEmpty()) {
+            List<Object[]> rows = new ArrayList<>(intentIds.size());
+            for (UUID id : intentIds) {
+                IntentState intent = intents.get(id);
+                rows.add(new Object[] { Timestamp.valueOf(intent.getCompletedAt()), id });
+            }
+            write(EXPIRE_INTENT, rows, intentIds, dirtyIntents);
+        }
+    }
+
+    // Entries are dropped once they are past evictAt and have nothing left to write.
+    // Synchronized with flush() so nothing is evicted between draining and writing it.
+    @Scheduled(fixedDelayString = "${qr.state.evict-interval-ms:10000}")
+    public synchronized void evictExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        qrCodes.values().removeIf(qr -> now.isAfter(qr.getEvictAt()));
+        intents.values().removeIf(intent -> now.isAfter(intent.getEvictAt())
+                && !dirtyIntents.contains(intent.getId()) && !intent.isExecuting());
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private static List<UUID> drain(Set<UUID> dirty) {
+        List<UUID> ids = new ArrayList<>();
+        for (UUID id : dirty) {
+            if (dirty.remove(id)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private void write(String sql, List<Object[]> rows, List<UUID> ids, Set<UUID> dirty) {
+        try {
+            jdbcTemplate.batchUpdate(sql, rows);
+        } catch (RuntimeException e) {
+            // Keep them dirty (and so not evictable) for the next flush
+            dirty.addAll(ids);
+            log.error(">>> QR STATE: Failed to write {} expired intents, will retry: {}", ids.size(), e.getMessage());
+        }
+    }
+}
@@ -15,6 +15,8 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class WalletController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final LedgerService ledgerService;
 
     @PostMapping("/accounts")
@@ -35,11 +37,22 @@ public class WalletController {
         return ResponseEntity.ok(ledgerService.recordTransaction(request));
     }
 
+    @GetMapping("/ledger/stats")
+    public ResponseEntity<WalletDto.LedgerStatsResponse> getLedgerStats() {
+        return ResponseEntity.ok(ledgerService.getLedgerStats());
+    }
+
     @GetMapping("/accounts/user/{userId}")
     public ResponseEntity<List<Account>> getAccountsByUserId(@PathVariable String userId) {
         return ResponseEntity.ok(ledgerService.getAccountsByUserId(userId));
     }
 
+    // Batched owner lookups for bulk payouts; unknown ids are left out
+    @PostMapping("/accounts/batch")
+    public ResponseEntity<List<Account>> getAccounts(@RequestBody List<UUID> ids) {
+        return ResponseEntity.ok(ledgerService.getAccounts(ids));
+    }
+
     @GetMapping("/accounts/{id}")
     public ResponseEntity<Account> getAccount(@PathVariable UUID id) {
         return ResponseEntity.ok(ledgerService.getAccount(id));
@@ -47,13 +60,27 @@ public class WalletController {
 
     @GetMapping("/accounts/{accountId}/transactions")
     public ResponseEntity<java.util.List<WalletDto.TransactionHistoryResponse>> getTransactionHistory(
-            @PathVariable UUID accountId) {
-        return ResponseEntity.ok(ledgerService.getTransactionHistory(accountId));
+            @PathVariable UUID accountId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return historyPage(ledgerService.getTransactionHistory(accountId, cursor, limit));
     }
 
     @GetMapping("/ledger/history/{userId}")
     public ResponseEntity<java.util.List<WalletDto.TransactionHistoryResponse>> getGlobalTransactionHistory(
-            @PathVariable String userId) {
-        return ResponseEntity.ok(ledgerService.getUserHistory(userId));
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return historyPage(ledgerService.getUserHistory(userId, cursor, limit));
+    }
+
+    // Body stays a plain array; the cursor for the next page travels in a header
+    private ResponseEntity<java.util.List<WalletDto.TransactionHistoryResponse>> historyPage(
+            WalletDto.TransactionHistoryPage page) {
+        var response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
     }
 }
@@ -75,4 +75,27 @@ public class WalletDto {
         private BigDecimal amount; // Net amount for this account
         private java.time.LocalDateTime createdAt;
     }
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class TransactionHistoryPage {
+        private List<TransactionHistoryResponse> items;
+        private String nextCursor; // null on the last page
+    }
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class LedgerStatsResponse {
+        private long postings;
+        private long lockConflicts; // Deadlocks and lock timeouts
+        private long lockRetries;
+        private long lockFailures; // Gave up after retries
+        private long idempotencyFilterMisses; // Answered "new" without a DB read
+        private long idempotencyCacheHits;
+        private long idempotencyDatabaseLookups;
+    }
 }
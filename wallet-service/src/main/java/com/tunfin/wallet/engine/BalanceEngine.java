@@ -0,0 +1,195 @@
+package com.tunfin.wallet.engine;
+
+import com.tunfin.wallet.dto.WalletDto;
+import com.tunfin.wallet.model.Account;
+import com.tunfin.wallet.model.AccountType;
+import com.tunfin.wallet.repository.AccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * In-memory balance engine for ledger postings. Accounts are hashed onto a fixed number of
+ * shards; a posting locks the shards it touches in ascending shard order, validates and
+ * applies every leg against the in-memory balances, and appends one record to the
+ * {@link LedgerJournal} before the locks are released. The caller is acknowledged once the
+ * journal has fsynced the record, and Postgres is brought up to date asynchronously by the
+ * {@link JournalProjector}. A posting whose journal write fails is taken back out of the
+ * balances before the caller sees the error.
+ * <p>
+ * Once an account is loaded here the engine owns its balance: nothing else may write
+ * {@code accounts.balance} while the engine is enabled.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.engine.enabled", havingValue = "true")
+@DependsOn("journalProjector")
+@Slf4j
+public class BalanceEngine {
+
+    private final AccountRepository accountRepository;
+    private final LedgerJournal journal;
+    private final BalanceShard[] shards;
+
+    public BalanceEngine(AccountRepository accountRepository, LedgerJournal journal,
+            @Value("${wallet.engine.shards:16}") int shardCount) {
+        this.accountRepository = accountRepository;
+        this.journal = journal;
+        this.shards = new BalanceShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new BalanceShard();
+        }
+        log.info(">>> ENGINE: Balance engine started with {} shards", shardCount);
+    }
+
+    /**
+     * Applies a balanced posting. The request must already have passed the sum == 0 check.
+     * {@code posted} looks up a referenceId that was already posted; it is asked once
+     * the referenceId is reserved, so a posting projected meanwhile is still seen, and its
+     * response is returned instead of posting again.
+     */
+    public WalletDto.TransactionResponse post(WalletDto.TransactionRequest request,
+            Function<String, Optional<WalletDto.TransactionResponse>> posted) {
+        if (!journal.reserve(request.getReferenceId())) {
+            throw new RuntimeException("Transaction already exists");
+        }
+
+        boolean journaled = false;
+        try {
+            Optional<WalletDto.TransactionResponse> existing = posted.apply(request.getReferenceId());
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+
+            // Net the legs per account so an account listed twice is checked once.
+            Map<UUID, BigDecimal> deltas = new LinkedHashMap<>();
+            for (WalletDto.LedgerEntryRequest entryReq : request.getEntries()) {
+                deltas.merge(UUID.fromString(entryReq.getAccountId()), entryReq.getAmount(), BigDecimal::add);
+            }
+
+            int[] order = deltas.keySet().stream().mapToInt(this::shardOf).distinct().sorted().toArray();
+            JournalRecord record;
+            CompletableFuture<Void> durable;
+
+            for (int index : order) {
+                shards[index].lock.lock();
+            }
+            try {
+                Map<UUID, BigDecimal> newBalances = new LinkedHashMap<>();
+                for (Map.Entry<UUID, BigDecimal> delta : deltas.entrySet()) {
+                    BalanceShard.AccountState state = load(delta.getKey());
+                    BigDecimal balance = state.type == AccountType.LIABILITY
+                            ? state.balance.subtract(delta.getValue())
+                            : state.balance.add(delta.getValue());
+
+                    if (balance.compareTo(BigDecimal.ZERO) < 0 && state.type == AccountType.LIABILITY) {
+                        throw new RuntimeException("Insufficient funds");
+                    }
+                    newBalances.put(state.id, balance);
+                }
+
+                List<JournalRecord.Leg> legs = new ArrayList<>(request.getEntries().size());
+                for (WalletDto.LedgerEntryRequest entryReq : request.getEntries()) {
+                    UUID accountId = UUID.fromString(entryReq.getAccountId());
+                    legs.add(new JournalRecord.Leg(UUID.randomUUID(), accountId, entryReq.getAmount(),
+                            newBalances.get(accountId)));
+                }
+
+                record = new JournalRecord(UUID.randomUUID(), request.getReferenceId(), request.getType(),
+                        request.getDescription(), LocalDateTime.now(), legs);
+
+                newBalances.forEach((id, balance) -> shards[shardOf(id)].get(id).balance = balance);
+                durable = journal.append(record);
+                journaled = true;
+            } finally {
+                for (int i = order.length - 1; i >= 0; i--) {
+                    shards[order[i]].lock.unlock();
+                }
+            }
+
+            try {
+                durable.join();
+            } catch (CompletionException e) {
+                revert(order, deltas);
+                journal.release(request.getReferenceId());
+                throw new RuntimeException("Ledger journal unavailable", e.getCause());
+            }
+            return record.toResponse();
+        } finally {
+            if (!journaled) {
+                journal.release(request.getReferenceId());
+            }
+        }
+    }
+
+    /*
+     * Takes back a posting the journal failed to write. Once a write fails the journal
+     * refuses every later append too, so each posting applied after it is reverted as well
+     * and the order of the reversals does not matter.
+     */
+    private void revert(int[] order, Map<UUID, BigDecimal> deltas) {
+        for (int index : order) {
+            shards[index].lock.lock();
+        }
+        try {
+            deltas.forEach((id, delta) -> {
+                BalanceShard.AccountState state = shards[shardOf(id)].get(id);
+                state.balance = state.type == AccountType.LIABILITY
+                        ? state.balance.add(delta)
+                        : state.balance.subtract(delta);
+            });
+        } finally {
+            for (int i = order.length - 1; i >= 0; i--) {
+                shards[order[i]].lock.unlock();
+            }
+        }
+        log.error(">>> ENGINE: Reverted unjournaled posting on {} accounts", deltas.size());
+    }
+
+    /**
+     * The engine's balance for an account, if it has been loaded.
+     */
+    public Optional<BigDecimal> balanceOf(UUID accountId) {
+        BalanceShard shard = shards[shardOf(accountId)];
+        shard.lock.lock();
+        try {
+            BalanceShard.AccountState state = shard.get(accountId);
+            return state == null ? Optional.empty() : Optional.of(state.balance);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public boolean isPending(String referenceId) {
+        return journal.isUnprojected(referenceId);
+    }
+
+    private BalanceShard.AccountState load(UUID accountId) {
+        BalanceShard shard = shards[shardOf(accountId)];
+        BalanceShard.AccountState state = shard.get(accountId);
+        if (state == null) {
+            Account account = accountRepository.findById(accountId)
+                    .orElseThrow(() -> new RuntimeException("Account not found"));
+            state = new BalanceShard.AccountState(account.getId(), account.getType(), account.getBalance());
+            shard.put(state);
+        }
+        return state;
+    }
+
+    private int shardOf(UUID accountId) {
+        return Math.floorMod(accountId.hashCode(), shards.length);
+    }
+}
@@ -0,0 +1,39 @@
+package com.tunfin.wallet.engine;
+
+import com.tunfin.wallet.model.AccountType;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A slice of the account space. Balances in a shard are only read or written by the
+ * thread holding its lock, so the shard has exactly one writer at a time.
+ */
+class BalanceShard {
+
+    final ReentrantLock lock = new ReentrantLock();
+    private final Map<UUID, AccountState> accounts = new HashMap<>();
+
+    AccountState get(UUID accountId) {
+        return accounts.get(accountId);
+    }
+
+    void put(AccountState state) {
+        accounts.put(state.id, state);
+    }
+
+    static class AccountState {
+        final UUID id;
+        final AccountType type;
+        BigDecimal balance;
+
+        AccountState(UUID id, AccountType type, BigDecimal balance) {
+            this.id = id;
+            this.type = type;
+            this.balance = balance;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.tunfin.wallet.engine;
+
+import com.tunfin.wallet.repository.LedgerJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes journaled postings into the transactions, ledger_entries and accounts tables. Runs
+ * behind the engine on its own thread, so Postgres is an eventually consistent projection
+ * of the journal. Every statement is idempotent, which lets recovery replay whole segments.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.engine.enabled", havingValue = "true")
+@Slf4j
+public class JournalProjector {
+
+    private final LedgerJournal journal;
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    private Thread worker;
+    private volatile boolean running;
+
+    public JournalProjector(LedgerJournal journal, LedgerJdbcRepository ledgerJdbcRepository,
+            TransactionTemplate transactionTemplate,
+            @Value("${wallet.engine.projection-batch:500}") int batchSize) {
+        this.journal = journal;
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    void start() {
+        // Replay before the engine loads any balance, so Postgres matches the journal.
+        List<JournalRecord> recovered = journal.takeRecovered();
+        for (int i = 0; i < recovered.size(); i += batchSize) {
+            projectIsolating(recovered.subList(i, Math.min(i + batchSize, recovered.size())));
+        }
+        journal.releaseSegmentsBefore(journal.currentSegment());
+
+        running = true;
+        worker = new Thread(this::projectLoop, "ledger-journal-projector");
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void projectLoop() {
+        long backoffMs = 100;
+        List<LedgerJournal.JournaledRecord> batch = List.of();
+        while (running || journal.hasUnflushed() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    batch = journal.pollFlushed(batchSize, 100);
+                    if (batch.isEmpty()) {
+                        continue;
+                    }
+                }
+
+                projectIsolating(batch.stream().map(LedgerJournal.JournaledRecord::record).toList());
+
+                batch.forEach(r -> journal.release(r.record().referenceId()));
+                journal.releaseSegmentsBefore(batch.get(batch.size() - 1).segment());
+                batch = List.of();
+                backoffMs = 100;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Only failures that may clear up get here (connection loss, timeouts): keep the
+                // batch and retry; the journal still holds it if we go down meanwhile.
+                log.error(">>> PROJECTOR: Failed to project {} postings, retrying in {} ms: {}",
+                        batch.size(), backoffMs, e.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, 10_000);
+            }
+        }
+    }
+
+    /*
+     * A batch that fails on its own data fails the same way on every retry, so it is split
+     * until the postings at fault are found and dead-lettered; the rest are projected in
+     * journal order.
+     */
+    private void projectIsolating(List<JournalRecord> records) {
+        try {
+            project(records);
+        } catch (DataIntegrityViolationException | IllegalStateException e) {
+            if (records.size() == 1) {
+                deadLetter(records.get(0), e.getMessage());
+                return;
+            }
+            int middle = records.size() / 2;
+            projectIsolating(records.subList(0, middle));
+            projectIsolating(records.subList(middle, records.size()));
+        }
+    }
+
+    private void project(List<JournalRecord> records) {
+        List<JournalRecord> conflicts = transactionTemplate
+                .execute(status -> ledgerJdbcRepository.writePostings(records, true));
+        conflicts.forEach(record -> deadLetter(record, "referenceId already posted by another transaction"));
+    }
+
+    private void deadLetter(JournalRecord record, String reason) {
+        log.error(">>> PROJECTOR: Dead-lettering posting {} ({}), its balances need reconciling: {}",
+                record.referenceId(), record.transactionId(), reason);
+        journal.deadLetter(record);
+    }
+}
@@ -0,0 +1,45 @@
+package com.tunfin.wallet.engine;
+
+import com.tunfin.wallet.dto.WalletDto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One posting as written to the ledger journal. Ids are assigned by the engine so that
+ * replaying a record into Postgres is idempotent.
+ */
+public record JournalRecord(
+        UUID transactionId,
+        String referenceId,
+        String type,
+        String description,
+        LocalDateTime createdAt,
+        List<Leg> legs) {
+
+    public WalletDto.TransactionResponse toResponse() {
+        return WalletDto.TransactionResponse.builder()
+                .id(transactionId)
+                .referenceId(referenceId)
+                .type(type)
+                .status("COMPLETED")
+                .description(description)
+                .entries(legs.stream()
+                        .map(leg -> WalletDto.LedgerEntryResponse.builder()
+                                .id(leg.entryId())
+                                .accountId(leg.accountId())
+                                .amount(leg.amount())
+                                .build())
+                        .collect(java.util.stream.Collectors.toList()))
+                .build();
+    }
+
+    public record Leg(
+            UUID entryId,
+            UUID accountId,
+            BigDecimal amount,
+            BigDecimal balanceAfter) {
+    }
+}
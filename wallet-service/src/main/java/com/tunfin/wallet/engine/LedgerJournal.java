@@ -0,0 +1,278 @@
+package com.tunfin.wallet.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Append-only write-ahead journal for the balance engine. Appends are queued and a single
+ * flusher thread writes whatever has accumulated and fsyncs once per batch (group commit).
+ * Flushed records are handed to the {@link JournalProjector}; segments are deleted once
+ * everything in them has reached Postgres.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.engine.enabled", havingValue = "true")
+@Slf4j
+public class LedgerJournal {
+
+    private static final String SEGMENT_PREFIX = "ledger-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String DEAD_LETTER_FILE = "dead-letters.log";
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final int maxBatch;
+    private final long segmentBytes;
+
+    private final BlockingQueue<PendingAppend> appendQueue = new LinkedBlockingQueue<>();
+    private final BlockingQueue<JournaledRecord> flushedQueue = new LinkedBlockingQueue<>();
+    private final Set<String> unprojectedReferences = ConcurrentHashMap.newKeySet();
+    private final List<JournalRecord> recovered = new ArrayList<>();
+
+    private FileChannel channel;
+    private volatile long segment;
+    private Thread flusher;
+    private volatile boolean running;
+    private volatile IOException failure;
+
+    public LedgerJournal(ObjectMapper objectMapper,
+            @Value("${wallet.engine.journal-dir:journal}") String directory,
+            @Value("${wallet.engine.group-commit-max-batch:512}") int maxBatch,
+            @Value("${wallet.engine.segment-bytes:67108864}") long segmentBytes) {
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory);
+        this.maxBatch = maxBatch;
+        this.segmentBytes = segmentBytes;
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        Files.createDirectories(directory);
+
+        long lastSegment = -1;
+        for (Path file : listSegments()) {
+            lastSegment = Math.max(lastSegment, segmentIndex(file));
+            readSegment(file);
+        }
+        if (!recovered.isEmpty()) {
+            log.info(">>> JOURNAL: Recovered {} postings from {}", recovered.size(), directory);
+        }
+
+        segment = lastSegment + 1;
+        channel = openSegment(segment);
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "ledger-journal-flusher");
+        flusher.start();
+    }
+
+    @PreDestroy
+    void close() throws InterruptedException, IOException {
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        channel.close();
+    }
+
+    /**
+     * Claims a reference id until its posting has been projected. Returns false if it is
+     * already journaled and not yet visible in Postgres.
+     */
+    public boolean reserve(String referenceId) {
+        return unprojectedReferences.add(referenceId);
+    }
+
+    public void release(String referenceId) {
+        unprojectedReferences.remove(referenceId);
+    }
+
+    public boolean isUnprojected(String referenceId) {
+        return unprojectedReferences.contains(referenceId);
+    }
+
+    /**
+     * Queues a record; the returned future completes once it has been fsynced.
+     */
+    public CompletableFuture<Void> append(JournalRecord record) {
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        appendQueue.add(new PendingAppend(record, durable));
+        return durable;
+    }
+
+    /**
+     * Records found on disk at startup, in journal order. Only returned once.
+     */
+    synchronized List<JournalRecord> takeRecovered() {
+        List<JournalRecord> records = new ArrayList<>(recovered);
+        recovered.clear();
+        return records;
+    }
+
+    List<JournaledRecord> pollFlushed(int max, long timeoutMs) throws InterruptedException {
+        List<JournaledRecord> batch = new ArrayList<>();
+        JournaledRecord first = flushedQueue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (first != null) {
+            batch.add(first);
+            flushedQueue.drainTo(batch, max - 1);
+        }
+        return batch;
+    }
+
+    boolean hasUnflushed() {
+        return !appendQueue.isEmpty() || !flushedQueue.isEmpty();
+    }
+
+    long currentSegment() {
+        return segment;
+    }
+
+    /**
+     * Deletes closed segments older than the given one. Callers guarantee that every record
+     * in them has been projected.
+     */
+    void releaseSegmentsBefore(long keepFrom) {
+        try {
+            for (Path file : listSegments()) {
+                if (segmentIndex(file) < keepFrom) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn(">>> JOURNAL: Could not delete projected segments: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Sets aside a record that can never be projected, so projection can move past it. The
+     * file is not a segment and survives segment release, for an operator to reconcile.
+     */
+    synchronized void deadLetter(JournalRecord record) {
+        try {
+            Files.write(directory.resolve(DEAD_LETTER_FILE),
+                    (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error(">>> JOURNAL: Could not dead-letter {}: {}", record.referenceId(), e.getMessage());
+        }
+    }
+
+    private void flushLoop() {
+        while (running || !appendQueue.isEmpty()) {
+            PendingAppend first;
+            try {
+                first = appendQueue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+
+            List<PendingAppend> batch = new ArrayList<>();
+            batch.add(first);
+            appendQueue.drainTo(batch, maxBatch - 1);
+
+            try {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(batch.size() * 256);
+                for (PendingAppend pending : batch) {
+                    buffer.write(objectMapper.writeValueAsBytes(pending.record()));
+                    buffer.write('\n');
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+
+                for (PendingAppend pending : batch) {
+                    flushedQueue.add(new JournaledRecord(pending.record(), segment));
+                    pending.durable().complete(null);
+                }
+
+                if (channel.size() >= segmentBytes) {
+                    channel.close();
+                    segment++;
+                    channel = openSegment(segment);
+                }
+            } catch (IOException e) {
+                // The engine has already applied these postings in memory; refuse further work.
+                log.error(">>> JOURNAL: Write failed, rejecting new postings", e);
+                failure = e;
+                batch.forEach(pending -> pending.durable().completeExceptionally(e));
+                appendQueue.forEach(pending -> pending.durable().completeExceptionally(e));
+                appendQueue.clear();
+                return;
+            }
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(f -> f.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted((a, b) -> Long.compare(segmentIndex(a), segmentIndex(b)))
+                    .toList();
+        }
+    }
+
+    private void readSegment(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    recovered.add(objectMapper.readValue(line, JournalRecord.class));
+                } catch (IOException e) {
+                    // A torn write at the tail of the last segment was never acknowledged.
+                    log.warn(">>> JOURNAL: Skipping unreadable record in {}", file.getFileName());
+                }
+            }
+        }
+    }
+
+    private FileChannel openSegment(long index) throws IOException {
+        return FileChannel.open(directory.resolve(SEGMENT_PREFIX + index + SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static long segmentIndex(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private record PendingAppend(JournalRecord record, CompletableFuture<Void> durable) {
+    }
+
+    record JournaledRecord(JournalRecord record, long segment) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.tunfin.wallet.idempotency;
+
+import com.tunfin.wallet.dto.WalletDto;
+import com.tunfin.wallet.model.Transaction;
+import com.tunfin.wallet.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers "has this referenceId been posted, and with what result?" in three tiers:
+ * a rolling Bloom filter that rules out new keys without touching the database, an LRU of
+ * recent responses for fast replays, and a lookup by referenceId only when the filter
+ * reports a possible hit. The filter only knows keys from its own window and this node. The
+ * balance engine runs on one node and trusts a miss; a retry older than the window is
+ * caught when its projection conflicts on transactions.reference_id and is dead-lettered.
+ * Where a miss must be confirmed, use {@link #findStored(String)}.
+ */
+@Component
+@Slf4j
+public class IdempotencyCache {
+
+    private final TransactionRepository transactionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final RollingBloomFilter filter;
+    private final Map<String, WalletDto.TransactionResponse> recent;
+    private final int warmupHours;
+
+    private final AtomicLong filterMisses = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong databaseLookups = new AtomicLong();
+
+    public IdempotencyCache(TransactionRepository transactionRepository, JdbcTemplate jdbcTemplate,
+            @Value("${wallet.idempotency.expected-keys:1000000}") long expectedKeys,
+            @Value("${wallet.idempotency.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${wallet.idempotency.recent-size:10000}") int recentSize,
+            @Value("${wallet.idempotency.warmup-hours:24}") int warmupHours) {
+        this.transactionRepository = transactionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.filter = new RollingBloomFilter(expectedKeys, falsePositiveRate);
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, WalletDto.TransactionResponse> eldest) {
+                return size() > recentSize;
+            }
+        });
+        this.warmupHours = warmupHours;
+    }
+
+    // Client retries arrive within minutes to hours, so only the recent window is loaded
+    @PostConstruct
+    void warmUp() {
+        Timestamp since = Timestamp.valueOf(LocalDateTime.now().minusHours(warmupHours));
+        AtomicLong loaded = new AtomicLong();
+        jdbcTemplate.query("SELECT reference_id FROM transactions WHERE created_at >= ?",
+                rs -> {
+                    filter.put(rs.getString(1));
+                    loaded.incrementAndGet();
+                }, since);
+        log.info(">>> IDEMPOTENCY: Loaded {} reference ids from the last {}h", loaded.get(), warmupHours);
+    }
+
+    /**
+     * The original response for a referenceId that has already been posted, if any.
+     */
+    public Optional<WalletDto.TransactionResponse> find(String referenceId) {
+        if (!filter.mightContain(referenceId)) {
+            filterMisses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        WalletDto.TransactionResponse cached = recent.get(referenceId);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return Optional.of(cached);
+        }
+
+        return findStored(referenceId);
+    }
+
+    /**
+     * The original response for a referenceId, read from the database without consulting
+     * the filter. Use it where the answer must be authoritative.
+     */
+    public Optional<WalletDto.TransactionResponse> findStored(String referenceId) {
+        databaseLookups.incrementAndGet();
+        Optional<WalletDto.TransactionResponse> stored = transactionRepository.findByReferenceId(referenceId)
+                .map(IdempotencyCache::toResponse);
+        stored.ifPresent(response -> recent.put(referenceId, response));
+        return stored;
+    }
+
+    /**
+     * Remembers a committed posting.
+     */
+    public void remember(WalletDto.TransactionResponse response) {
+        filter.put(response.getReferenceId());
+        recent.put(response.getReferenceId(), response);
+    }
+
+    public long getFilterMisses() {
+        return filterMisses.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getDatabaseLookups() {
+        return databaseLookups.get();
+    }
+
+    private static WalletDto.TransactionResponse toResponse(Transaction tx) {
+        return WalletDto.TransactionResponse.builder()
+                .id(tx.getId())
+                .referenceId(tx.getReferenceId())
+                .type(tx.getType())
+                .status(tx.getStatus())
+                .description(tx.getDescription())
+                .entries(tx.getEntries().stream()
+                        .map(e -> WalletDto.LedgerEntryResponse.builder()
+                                .id(e.getId())
+                                .accountId(e.getAccount().getId())
+                                .amount(e.getAmount())
+                                .build())
+                        .collect(java.util.stream.Collectors.toList()))
+                .build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.tunfin.wallet.idempotency;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over strings that keeps two generations. Once the current
+ * generation has taken {@code capacity} keys it becomes the previous one and a fresh
+ * generation starts, so memory stays bounded and old keys eventually age out.
+ * {@link #mightContain} checks both generations; a false answer is always correct.
+ */
+public class RollingBloomFilter {
+
+    private final int bits;
+    private final int hashes;
+    private final long capacity;
+
+    private volatile AtomicLongArray current;
+    private volatile AtomicLongArray previous;
+    private final AtomicLong inserted = new AtomicLong();
+
+    public RollingBloomFilter(long capacity, double falsePositiveRate) {
+        long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63));
+        this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+        this.capacity = capacity;
+        this.current = new AtomicLongArray(words());
+        this.previous = new AtomicLongArray(words());
+    }
+
+    public void put(String key) {
+        if (inserted.incrementAndGet() > capacity) {
+            rotate();
+        }
+        long[] h = hash(key);
+        AtomicLongArray target = current;
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(h, i);
+            long mask = 1L << bit;
+            target.getAndUpdate(bit >>> 6, word -> word | mask);
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long[] h = hash(key);
+        return contains(current, h) || contains(previous, h);
+    }
+
+    private synchronized void rotate() {
+        if (inserted.get() <= capacity) {
+            return;
+        }
+        previous = current;
+        current = new AtomicLongArray(words());
+        inserted.set(1);
+    }
+
+    private boolean contains(AtomicLongArray array, long[] h) {
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(h, i);
+            if ((array.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int words() {
+        return (bits + 63) >>> 6;
+    }
+
+    // Kirsch-Mitzenmacher double hashing: g_i = h1 + i * h2
+    private int index(long[] h, int i) {
+        return (int) Math.floorMod(h[0] + i * h[1], (long) bits);
+    }
+
+    private static long[] hash(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        long h1 = 0xcbf29ce484222325L;
+        long h2 = 0x9e3779b97f4a7c15L;
+        for (byte b : bytes) {
+            h1 = (h1 ^ b) * 0x100000001b3L;
+            h2 = Long.rotateLeft(h2 ^ b, 31) * 0xbf58476d1ce4e5b9L;
+        }
+        return new long[] { mix(h1), mix(h2) | 1 };
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
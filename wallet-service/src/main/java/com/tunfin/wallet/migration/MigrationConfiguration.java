@@ -0,0 +1,21 @@
+package com.tunfin.wallet.migration;
+
+import com.tunfin.common.migration.Migration;
+import com.tunfin.common.migration.MigrationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@Configuration
+public class MigrationConfiguration {
+
+    // Arbitrary, but the same on every node
+    private static final long LOCK_KEY = 0x3a11e7_0000_0005L;
+
+    @Bean
+    public MigrationRunner migrationRunner(JdbcTemplate jdbcTemplate, List<Migration> migrations) {
+        return new MigrationRunner(jdbcTemplate, migrations, "wallet_schema_migrations", LOCK_KEY);
+    }
+}
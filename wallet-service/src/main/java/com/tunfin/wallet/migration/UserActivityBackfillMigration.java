@@ -0,0 +1,72 @@
+package com.tunfin.wallet.migration;
+
+import com.tunfin.common.migration.Migration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Populates the user_activity read model from the ledger for postings made before it
+ * existed. Transactions are walked in id order a chunk at a time, one INSERT per chunk, so
+ * no statement covers the whole ledger. Rows that postings have already written are left
+ * alone, which also makes a backfill interrupted halfway safe to run again.
+ */
+@Component
+@Slf4j
+public class UserActivityBackfillMigration implements Migration {
+
+    private static final String SELECT_CHUNK = "SELECT id FROM transactions WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String BACKFILL_CHUNK = """
+            INSERT INTO user_activity (user_id, transaction_id, reference_id, type, status, description, amount, created_at)
+            SELECT a.user_id, t.id, t.reference_id, t.type, t.status, t.description, SUM(e.amount), t.created_at
+            FROM transactions t
+            JOIN ledger_entries e ON e.transaction_id = t.id
+            JOIN accounts a ON a.id = e.account_id
+            WHERE t.id = ANY(?)
+            GROUP BY a.user_id, t.id, t.reference_id, t.type, t.status, t.description, t.created_at
+            ON CONFLICT DO NOTHING""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int chunkSize;
+
+    public UserActivityBackfillMigration(JdbcTemplate jdbcTemplate,
+            @Value("${wallet.migration.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public String version() {
+        return "001";
+    }
+
+    @Override
+    public String description() {
+        return "Backfill user_activity from the ledger";
+    }
+
+    @Override
+    public void apply() {
+        UUID after = new UUID(0L, 0L);
+        int scanned = 0;
+        int written = 0;
+        List<UUID> chunk;
+        do {
+            chunk = jdbcTemplate.queryForList(SELECT_CHUNK, UUID.class, after, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            UUID[] ids = chunk.toArray(UUID[]::new);
+            written += jdbcTemplate.update(BACKFILL_CHUNK,
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids)));
+            scanned += chunk.size();
+            after = chunk.get(chunk.size() - 1);
+        } while (chunk.size() == chunkSize);
+        log.info(">>> MIGRATION: Backfilled {} user_activity rows from {} transactions", written, scanned);
+    }
+}
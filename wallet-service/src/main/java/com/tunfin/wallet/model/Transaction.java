@@ -13,7 +13,9 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_created_id", columnList = "created_at DESC, id DESC")
+})
 @Data
 @Builder
 @NoArgsConstructor
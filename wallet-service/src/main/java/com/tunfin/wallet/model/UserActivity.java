@@ -0,0 +1,59 @@
+package com.tunfin.wallet.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Read model for the user-wide history feed: one row per user and transaction, holding
+ * the net amount across that user's legs. Written by LedgerJdbcRepository in the same
+ * database transaction as the posting.
+ */
+@Entity
+@Table(name = "user_activity", indexes = {
+        @Index(name = "idx_user_activity_user_created", columnList = "user_id, created_at DESC, transaction_id")
+})
+@IdClass(UserActivity.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserActivity {
+    @Id
+    private String userId;
+
+    @Id
+    private UUID transactionId;
+
+    @Column(nullable = false)
+    private String referenceId;
+
+    @Column(nullable = false)
+    private String type;
+
+    @Column(nullable = false)
+    private String status;
+
+    private String description;
+
+    @Column(nullable = false)
+    private BigDecimal amount; // Net for this user, signed
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String userId;
+        private UUID transactionId;
+    }
+}
@@ -0,0 +1,141 @@
+package com.tunfin.wallet.repository;
+
+import com.tunfin.wallet.engine.JournalRecord;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Batched JDBC writes for postings: one batch each for transactions, ledger entries,
+ * account balances and the user_activity read model, however many postings and legs are
+ * written.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LedgerJdbcRepository {
+
+    private static final String INSERT_TRANSACTION = """
+            INSERT INTO transactions (id, reference_id, type, status, description, created_at)
+            VALUES (?, ?, ?, 'COMPLETED', ?, ?)""";
+
+    private static final String INSERT_ENTRY = """
+            INSERT INTO ledger_entries (id, transaction_id, account_id, amount, created_at)
+            VALUES (?, ?, ?, ?, ?)""";
+
+    private static final String UPDATE_BALANCE = "UPDATE accounts SET balance = ? WHERE id = ?";
+
+    private static final String INSERT_ACTIVITY = """
+            INSERT INTO user_activity (user_id, transaction_id, reference_id, type, status, description, amount, created_at)
+            VALUES (?, ?, ?, ?, 'COMPLETED', ?, ?, ?)""";
+
+    private static final String ON_CONFLICT_DO_NOTHING = " ON CONFLICT DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Writes postings in the order given. With {@code replay} set, rows that already exist
+     * are skipped, so the same records can be written more than once; a record whose
+     * referenceId is already stored under another transaction is not written at all and is
+     * returned instead, since its entries would have no transaction to belong to.
+     */
+    public List<JournalRecord> writePostings(List<JournalRecord> records, boolean replay) {
+        List<JournalRecord> conflicts = replay ? findConflicts(records) : List.of();
+        if (!conflicts.isEmpty()) {
+            Set<JournalRecord> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
+            skipped.addAll(conflicts);
+            records = records.stream().filter(r -> !skipped.contains(r)).toList();
+        }
+
+        List<Object[]> transactions = new ArrayList<>(records.size());
+        List<Object[]> entries = new ArrayList<>(records.size() * 2);
+        Map<UUID, BigDecimal> balances = new LinkedHashMap<>();
+
+        for (JournalRecord record : records) {
+            Timestamp createdAt = Timestamp.valueOf(record.createdAt());
+            transactions.add(new Object[] { record.transactionId(), record.referenceId(), record.type(),
+                    record.description(), createdAt });
+            for (JournalRecord.Leg leg : record.legs()) {
+                entries.add(new Object[] { leg.entryId(), record.transactionId(), leg.accountId(), leg.amount(),
+                        createdAt });
+                // Last balance seen per account wins
+                balances.put(leg.accountId(), leg.balanceAfter());
+            }
+        }
+
+        List<Object[]> balanceUpdates = balances.entrySet().stream()
+                .map(e -> new Object[] { e.getValue(), e.getKey() })
+                .toList();
+
+        List<Object[]> activity = userActivity(records, findUserIds(balances.keySet()));
+
+        String suffix = replay ? ON_CONFLICT_DO_NOTHING : "";
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION + suffix, transactions);
+        jdbcTemplate.batchUpdate(INSERT_ENTRY + suffix, entries);
+        jdbcTemplate.batchUpdate(UPDATE_BALANCE, balanceUpdates);
+        jdbcTemplate.batchUpdate(INSERT_ACTIVITY + suffix, activity);
+        return conflicts;
+    }
+
+    // One row per (user, transaction) with the user's legs netted, in posting order
+    private static List<Object[]> userActivity(List<JournalRecord> records, Map<UUID, String> userIds) {
+        List<Object[]> rows = new ArrayList<>(records.size() * 2);
+        for (JournalRecord record : records) {
+            Map<String, BigDecimal> net = new LinkedHashMap<>();
+            for (JournalRecord.Leg leg : record.legs()) {
+                String userId = userIds.get(leg.accountId());
+                if (userId == null) {
+                    throw new IllegalStateException("Account not found: " + leg.accountId());
+                }
+                net.merge(userId, leg.amount(), BigDecimal::add);
+            }
+            Timestamp createdAt = Timestamp.valueOf(record.createdAt());
+            net.forEach((userId, amount) -> rows.add(new Object[] { userId, record.transactionId(),
+                    record.referenceId(), record.type(), record.description(), amount, createdAt }));
+        }
+        return rows;
+    }
+
+    // The first record to claim a referenceId, in the database or earlier in the batch, keeps it
+    private List<JournalRecord> findConflicts(List<JournalRecord> records) {
+        Map<String, UUID> owners = new HashMap<>();
+        String[] referenceIds = records.stream().map(JournalRecord::referenceId).distinct().toArray(String[]::new);
+        jdbcTemplate.query("SELECT reference_id, id FROM transactions WHERE reference_id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", referenceIds)),
+                (RowCallbackHandler) rs -> owners.put(rs.getString(1), rs.getObject(2, UUID.class)));
+
+        List<JournalRecord> conflicts = new ArrayList<>();
+        for (JournalRecord record : records) {
+            UUID owner = owners.putIfAbsent(record.referenceId(), record.transactionId());
+            if (owner != null && !owner.equals(record.transactionId())) {
+                conflicts.add(record);
+            }
+        }
+        return conflicts;
+    }
+
+    private Map<UUID, String> findUserIds(Collection<UUID> accountIds) {
+        Map<UUID, String> userIds = new HashMap<>();
+        if (accountIds.isEmpty()) {
+            return userIds;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(accountIds.size(), "?"));
+        jdbcTemplate.query("SELECT id, user_id FROM accounts WHERE id IN (" + placeholders + ")",
+                (RowCallbackHandler) rs -> userIds.put(
+                        rs.getObject(1, UUID.class), rs.getString(2)), accountIds.toArray());
+        return userIds;
+    }
+}
@@ -1,21 +1,55 @@
 package com.tunfin.wallet.repository;
 
 import com.tunfin.wallet.model.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, UUID> {
     boolean existsByReferenceId(String referenceId);
 
-    @Query("SELECT DISTINCT t FROM Transaction t JOIN t.entries e WHERE e.account.id = :accountId ORDER BY t.createdAt DESC")
-    List<Transaction> findByAccountId(@Param("accountId") UUID accountId);
+    Optional<Transaction> findByReferenceId(String referenceId);
 
-    @Query("SELECT DISTINCT t FROM Transaction t JOIN t.entries e WHERE e.account.userId = :userId ORDER BY t.createdAt DESC")
-    List<Transaction> findByUserId(@Param("userId") String userId);
+    // Keyset page of an account's history, newest first, one row per transaction. The page is
+    // keyed on the transaction's own (createdAt, id), bounded by idx_transactions_created_id
+    // before anything is summed; the account's net amount is then summed only for the page's
+    // transactions, from idx_ledger_entries_account_created.
+    @Query("""
+            SELECT t.id AS id, t.referenceId AS referenceId, t.type AS type, t.status AS status,
+                   t.description AS description,
+                   (SELECT SUM(e.amount) FROM LedgerEntry e
+                    WHERE e.account.id = :accountId AND e.transaction.id = t.id) AS amount,
+                   t.createdAt AS createdAt
+            FROM Transaction t
+            WHERE (t.createdAt < :beforeCreatedAt OR (t.createdAt = :beforeCreatedAt AND t.id < :beforeId))
+              AND t.id IN (SELECT e.transaction.id FROM LedgerEntry e WHERE e.account.id = :accountId)
+            ORDER BY t.createdAt DESC, t.id DESC""")
+    List<HistoryRow> findHistoryPageByAccountId(@Param("accountId") UUID accountId,
+            @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt, @Param("beforeId") UUID beforeId,
+            Pageable pageable);
+
+    interface HistoryRow {
+        UUID getId();
+
+        String getReferenceId();
+
+        String getType();
+
+        String getStatus();
+
+        String getDescription();
+
+        BigDecimal getAmount();
+
+        LocalDateTime getCreatedAt();
+    }
 }
@@ -0,0 +1,28 @@
+package com.tunfin.wallet.repository;
+
+import com.tunfin.wallet.model.UserActivity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface UserActivityRepository extends JpaRepository<UserActivity, UserActivity.Key> {
+
+    // Keyset page of a user's feed, newest first: one range scan on idx_user_activity_user_created
+    @Query("""
+            SELECT ua.transactionId AS id, ua.referenceId AS referenceId, ua.type AS type, ua.status AS status,
+                   ua.description AS description, ua.amount AS amount, ua.createdAt AS createdAt
+            FROM UserActivity ua
+            WHERE ua.userId = :userId
+              AND (ua.createdAt < :beforeCreatedAt OR (ua.createdAt = :beforeCreatedAt AND ua.transactionId < :beforeId))
+            ORDER BY ua.createdAt DESC, ua.transactionId DESC""")
+    List<TransactionRepository.HistoryRow> findHistoryPage(@Param("userId") String userId,
+            @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt, @Param("beforeId") UUID beforeId,
+            Pageable pageable);
+}
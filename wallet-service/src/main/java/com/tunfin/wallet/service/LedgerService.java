@@ -1,32 +1,103 @@
 package com.tunfin.wallet.service;
 
 import com.tunfin.wallet.dto.WalletDto;
+import com.tunfin.wallet.engine.BalanceEngine;
+import com.tunfin.wallet.engine.JournalRecord;
+import com.tunfin.wallet.idempotency.IdempotencyCache;
 import com.tunfin.wallet.model.*;
 import com.tunfin.wallet.repository.AccountRepository;
+import com.tunfin.wallet.repository.LedgerJdbcRepository;
 import com.tunfin.wallet.repository.TransactionRepository;
+import com.tunfin.wallet.repository.UserActivityRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import java.math.BigDecimal;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class LedgerService {
 
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
+    private final UserActivityRepository userActivityRepository;
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotencyCache idempotencyCache;
+
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int UNPAGED = Integer.MAX_VALUE;
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    @Value("${wallet.ledger.max-lock-retries:3}")
+    private int maxLockRetries;
+
+    @Value("${wallet.history.page-size:50}")
+    private int defaultPageSize;
+
+    private final AtomicLong postings = new AtomicLong();
+    private final AtomicLong lockConflicts = new AtomicLong();
+    private final AtomicLong lockRetries = new AtomicLong();
+    private final AtomicLong lockFailures = new AtomicLong();
+
+    // Present only when wallet.engine.enabled=true
+    @Autowired(required = false)
+    private BalanceEngine balanceEngine;
 
     public List<Account> getAccountsByUserId(String userId) {
-        return accountRepository.findByUserId(userId);
+        List<Account> accounts = accountRepository.findByUserId(userId);
+        accounts.forEach(this::applyEngineBalance);
+        return accounts;
     }
 
     public Account getAccount(UUID id) {
-        return accountRepository.findById(id)
+        Account account = accountRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Account not found"));
+        applyEngineBalance(account);
+        return account;
+    }
+
+    /**
+     * The accounts among the given ids, in one query; ids with no account are left out.
+     */
+    public List<Account> getAccounts(java.util.Collection<UUID> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new RuntimeException("Too many accounts, at most " + MAX_BATCH_SIZE + " per request");
+        }
+        List<Account> accounts = accountRepository.findAllById(ids);
+        accounts.forEach(this::applyEngineBalance);
+        return accounts;
+    }
+
+    // The engine is ahead of Postgres until the projector catches up
+    private void applyEngineBalance(Account account) {
+        if (balanceEngine != null) {
+            balanceEngine.balanceOf(account.getId()).ifPresent(account::setBalance);
+        }
     }
 
     @Transactional
@@ -68,14 +139,101 @@ public class LedgerService {
                 .format(java.time.format.DateTimeFormatter.ofPattern("MM/yy"));
     }
 
-    @Transactional
+    /**
+     * Records a balanced posting. A referenceId that was already posted returns the original
+     * response. Lock conflicts (deadlocks, lock timeouts) are retried when this call owns its
+     * transaction; inside a caller's transaction they are rethrown.
+     * <p>
+     * With the balance engine, a posting is applied once journaled, whatever becomes of a
+     * database transaction around it. Inside a caller's transaction it is therefore only
+     * checked, and posted once that transaction commits; the caller gets a PENDING response.
+     */
     public WalletDto.TransactionResponse recordTransaction(WalletDto.TransactionRequest request) {
-        // 1. Validate Idempotency
-        if (transactionRepository.existsByReferenceId(request.getReferenceId())) {
+        boolean ownsTransaction = !TransactionSynchronizationManager.isActualTransactionActive();
+        if (balanceEngine != null) {
+            return ownsTransaction ? postToEngine(request) : postToEngineAfterCommit(request);
+        }
+        int attempt = 0;
+        while (true) {
+            try {
+                WalletDto.TransactionResponse response = transactionTemplate
+                        .execute(status -> doRecordTransaction(request));
+                postings.incrementAndGet();
+                return response;
+            } catch (DuplicateKeyException e) {
+                // A concurrent request with the same referenceId committed first
+                if (!ownsTransaction) {
+                    throw new RuntimeException("Transaction already exists");
+                }
+                // The unique violation proves the row exists, whatever this node's filter holds
+                return idempotencyCache.findStored(request.getReferenceId())
+                        .orElseThrow(() -> new RuntimeException("Transaction already exists"));
+            } catch (PessimisticLockingFailureException e) {
+                lockConflicts.incrementAndGet();
+                if (!ownsTransaction || ++attempt > maxLockRetries) {
+                    lockFailures.incrementAndGet();
+                    throw new RuntimeException("Transaction could not acquire account locks, please retry", e);
+                }
+                lockRetries.incrementAndGet();
+                log.warn(">>> LEDGER: Lock conflict on {} (attempt {}), retrying", request.getReferenceId(), attempt);
+            }
+        }
+    }
+
+    public WalletDto.LedgerStatsResponse getLedgerStats() {
+        return WalletDto.LedgerStatsResponse.builder()
+                .postings(postings.get())
+                .lockConflicts(lockConflicts.get())
+                .lockRetries(lockRetries.get())
+                .lockFailures(lockFailures.get())
+                .idempotencyFilterMisses(idempotencyCache.getFilterMisses())
+                .idempotencyCacheHits(idempotencyCache.getCacheHits())
+                .idempotencyDatabaseLookups(idempotencyCache.getDatabaseLookups())
+                .build();
+    }
+
+    // Outside any transaction: the wait for the journal fsync holds no pooled connection
+    private WalletDto.TransactionResponse postToEngine(WalletDto.TransactionRequest request) {
+        var replay = idempotencyCache.find(request.getReferenceId());
+        if (replay.isPresent()) {
+            return replay.get();
+        }
+        if (balanceEngine.isPending(request.getReferenceId())) {
             throw new RuntimeException("Transaction already exists");
         }
+        requireBalanced(request);
 
-        // 2. Validate Sum == 0
+        // Every engine posting passes through this node's filter, so only a possible hit is
+        // looked up, again once the referenceId is reserved in the journal
+        WalletDto.TransactionResponse response = balanceEngine.post(request, idempotencyCache::find);
+        idempotencyCache.remember(response);
+        postings.incrementAndGet();
+        return response;
+    }
+
+    // A rollback leaves nothing posted; a posting refused after the commit can only be logged
+    private WalletDto.TransactionResponse postToEngineAfterCommit(WalletDto.TransactionRequest request) {
+        requireBalanced(request);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    postToEngine(request);
+                } catch (RuntimeException e) {
+                    log.error(">>> LEDGER: Posting {} failed after its transaction committed: {}",
+                            request.getReferenceId(), e.getMessage());
+                }
+            }
+        });
+        return WalletDto.TransactionResponse.builder()
+                .referenceId(request.getReferenceId())
+                .type(request.getType())
+                .status("PENDING")
+                .description(request.getDescription())
+                .build();
+    }
+
+    private static void requireBalanced(WalletDto.TransactionRequest request) {
         BigDecimal sum = request.getEntries().stream()
                 .map(WalletDto.LedgerEntryRequest::getAmount)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
@@ -83,108 +241,160 @@ public class LedgerService {
         if (sum.compareTo(BigDecimal.ZERO) != 0) {
             throw new RuntimeException("Ledger imbalance: Sum must be 0");
         }
+    }
 
-        // 3. Create Transaction
-        Transaction tx = Transaction.builder()
-                .referenceId(request.getReferenceId())
-                .type(request.getType())
-                .description(request.getDescription())
-                .status("COMPLETED")
-                .build();
+    private WalletDto.TransactionResponse doRecordTransaction(WalletDto.TransactionRequest request) {
+        // 1. Validate Idempotency: replays get the original response
+        var replay = idempotencyCache.find(request.getReferenceId());
+        if (replay.isPresent()) {
+            return replay.get();
+        }
+
+        // 2. Validate Sum == 0
+        requireBalanced(request);
 
-        // 4. Process Entries & Update Balances
+        // 3. Lock every account in one query, in id order, so concurrent postings can't deadlock
+        Set<UUID> accountIds = new TreeSet<>();
+        request.getEntries().forEach(e -> accountIds.add(UUID.fromString(e.getAccountId())));
+
+        Map<UUID, Account> accounts = new HashMap<>();
+        accountRepository.findAllWithLockByIdIn(accountIds).forEach(a -> accounts.put(a.getId(), a));
+        if (accounts.size() != accountIds.size()) {
+            throw new RuntimeException("Account not found");
+        }
+
+        // 4. Process Entries against the locked balances
+        Map<UUID, BigDecimal> balances = new HashMap<>();
+        List<JournalRecord.Leg> legs = new ArrayList<>(request.getEntries().size());
         for (WalletDto.LedgerEntryRequest entryReq : request.getEntries()) {
-            Account account = accountRepository.findWithLockById(UUID.fromString(entryReq.getAccountId()))
-                    .orElseThrow(() -> new RuntimeException("Account not found"));
+            Account account = accounts.get(UUID.fromString(entryReq.getAccountId()));
+            BigDecimal balance = balances.getOrDefault(account.getId(), account.getBalance());
 
             if (account.getType() == AccountType.LIABILITY) {
-                account.setBalance(account.getBalance().subtract(entryReq.getAmount()));
+                balance = balance.subtract(entryReq.getAmount());
             } else {
-                account.setBalance(account.getBalance().add(entryReq.getAmount()));
+                balance = balance.add(entryReq.getAmount());
             }
 
-            if (account.getBalance().compareTo(BigDecimal.ZERO) < 0 && account.getType() == AccountType.LIABILITY) {
+            if (balance.compareTo(BigDecimal.ZERO) < 0 && account.getType() == AccountType.LIABILITY) {
                 throw new RuntimeException("Insufficient funds");
             }
 
-            accountRepository.save(account);
+            balances.put(account.getId(), balance);
+            legs.add(new JournalRecord.Leg(UUID.randomUUID(), account.getId(), entryReq.getAmount(), balance));
+        }
+
+        // 5. Write transaction, entries and balances in one JDBC batch each
+        JournalRecord record = new JournalRecord(UUID.randomUUID(), request.getReferenceId(), request.getType(),
+                request.getDescription(), LocalDateTime.now(), legs);
+        ledgerJdbcRepository.writePostings(List.of(record), false);
+
+        WalletDto.TransactionResponse response = record.toResponse();
+        rememberAfterCommit(response);
+        return response;
+    }
+
+    // Only committed postings may be replayed; an outer transaction can still roll back
+    private void rememberAfterCommit(WalletDto.TransactionResponse response) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                idempotencyCache.remember(response);
+            }
+        });
+    }
+
+    public WalletDto.TransactionHistoryPage getTransactionHistory(UUID accountId, String cursor, Integer limit) {
+        int pageSize = pageSize(cursor, limit);
+        HistoryCursor after = HistoryCursor.decode(cursor);
+        List<TransactionRepository.HistoryRow> rows = transactionRepository.findHistoryPageByAccountId(
+                accountId, after.createdAt(), after.id(), oneMoreThan(pageSize));
+        return mapToHistoryResponse(rows, pageSize);
+    }
 
-            LedgerEntry entry = LedgerEntry.builder()
-                    .transaction(tx)
-                    .account(account)
-                    .amount(entryReq.getAmount())
-                    .build();
+    public WalletDto.TransactionHistoryPage getUserHistory(String userId, String cursor, Integer limit) {
+        int pageSize = pageSize(cursor, limit);
+        HistoryCursor after = HistoryCursor.decode(cursor);
+        // Served from the user_activity read model
+        List<TransactionRepository.HistoryRow> rows = userActivityRepository.findHistoryPage(
+                userId, after.createdAt(), after.id(), oneMoreThan(pageSize));
+        return mapToHistoryResponse(rows, pageSize);
+    }
 
-            tx.getEntries().add(entry);
+    // Callers that send neither a cursor nor a limit predate paging and still get the whole history
+    private int pageSize(String cursor, Integer limit) {
+        if (cursor == null && limit == null) {
+            return UNPAGED;
+        }
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Invalid limit: must be at least 1");
         }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
 
-        Transaction savedTx = transactionRepository.save(tx);
+    // One extra row tells whether another page exists
+    private static Pageable oneMoreThan(int pageSize) {
+        return pageSize == UNPAGED ? Pageable.unpaged() : PageRequest.of(0, pageSize + 1);
+    }
 
-        return WalletDto.TransactionResponse.builder()
-                .id(savedTx.getId())
-                .referenceId(savedTx.getReferenceId())
-                .type(savedTx.getType())
-                .status(savedTx.getStatus())
-                .description(savedTx.getDescription())
-                .entries(savedTx.getEntries().stream()
-                        .map(e -> WalletDto.LedgerEntryResponse.builder()
-                                .id(e.getId())
-                                .accountId(e.getAccount().getId())
-                                .amount(e.getAmount())
-                                .build())
-                        .collect(java.util.stream.Collectors.toList()))
+    private WalletDto.TransactionHistoryPage mapToHistoryResponse(List<TransactionRepository.HistoryRow> rows,
+            int pageSize) {
+        boolean hasMore = rows.size() > pageSize;
+        List<TransactionRepository.HistoryRow> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        List<WalletDto.TransactionHistoryResponse> items = new ArrayList<>(page.size());
+        for (TransactionRepository.HistoryRow row : page) {
+            items.add(WalletDto.TransactionHistoryResponse.builder()
+                    .id(row.getId())
+                    .referenceId(row.getReferenceId())
+                    .type(row.getType())
+                    .status(row.getStatus())
+                    .description(row.getDescription())
+                    .amount(row.getAmount())
+                    .createdAt(row.getCreatedAt())
+                    .build());
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            TransactionRepository.HistoryRow last = page.get(page.size() - 1);
+            nextCursor = new HistoryCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return WalletDto.TransactionHistoryPage.builder()
+                .items(items)
+                .nextCursor(nextCursor)
                 .build();
     }
 
-    public List<WalletDto.TransactionHistoryResponse> getTransactionHistory(UUID accountId) {
-        List<Transaction> transactions = transactionRepository.findByAccountId(accountId);
-        return mapToHistoryResponse(transactions, accountId);
-    }
-
-    public List<WalletDto.TransactionHistoryResponse> getUserHistory(String userId) {
-        List<Transaction> transactions = transactionRepository.findByUserId(userId);
-        // For user-wide history, we need to decide which "amount" to show.
-        // We'll show the net amount across all of user's accounts involved in the tx.
-        return transactions.stream()
-                .map(tx -> {
-                    java.math.BigDecimal netAmount = tx.getEntries().stream()
-                            .filter(e -> e.getAccount().getUserId().equals(userId))
-                            .map(LedgerEntry::getAmount)
-                            .reduce(java.math.BigDecimal.ZERO, java.math.BigDecimal::add);
-
-                    return WalletDto.TransactionHistoryResponse.builder()
-                            .id(tx.getId())
-                            .referenceId(tx.getReferenceId())
-                            .type(tx.getType())
-                            .status(tx.getStatus())
-                            .description(tx.getDescription())
-                            .amount(netAmount)
-                            .createdAt(tx.getCreatedAt())
-                            .build();
-                })
-                .collect(java.util.stream.Collectors.toList());
-    }
-
-    private List<WalletDto.TransactionHistoryResponse> mapToHistoryResponse(List<Transaction> transactions,
-            UUID accountId) {
-        return transactions.stream()
-                .map(tx -> {
-                    // Find the net amount for this specific account
-                    java.math.BigDecimal netAmount = tx.getEntries().stream()
-                            .filter(e -> e.getAccount().getId().equals(accountId))
-                            .map(LedgerEntry::getAmount)
-                            .reduce(java.math.BigDecimal.ZERO, java.math.BigDecimal::add);
-
-                    return WalletDto.TransactionHistoryResponse.builder()
-                            .id(tx.getId())
-                            .referenceId(tx.getReferenceId())
-                            .type(tx.getType())
-                            .status(tx.getStatus())
-                            .description(tx.getDescription())
-                            .amount(netAmount)
-                            .createdAt(tx.getCreatedAt())
-                            .build();
-                })
-                .collect(java.util.stream.Collectors.toList());
+    /**
+     * Position after the last row of a page, as an opaque base64url string. The empty cursor
+     * sorts after every real row.
+     */
+    private record HistoryCursor(LocalDateTime createdAt, UUID id) {
+
+        private static final HistoryCursor START = new HistoryCursor(
+                LocalDateTime.of(9999, 12, 31, 23, 59), new UUID(-1L, -1L));
+
+        static HistoryCursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return START;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new HistoryCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        UUID.fromString(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
     }
 }